@@ -0,0 +1,229 @@
+/**
+ * Resolves package addresses to DistanceGraph indexes once, at load time.
+ * Built from the addresses in the distance table header. Every address is
+ * reduced to canonical tokens (lower case, no punctuation, "South" and "S",
+ * "Street" and "St" etc. spelled the same) and looked up exactly. Anything
+ * that still does not match gets a fuzzy lookup, so a typo like
+ * "1060 Daltn Ave S" resolves to the table's "1060 Dalton Ave S".
+ *
+ * The fuzzy lookup never changes a number or a direction: "400 S State St"
+ * is a different place from "410 S State St", and "4300 S 1300 E" from
+ * "4300 N 1300 E". Addresses are bucketed by those exact tokens and only
+ * compared within their bucket, by edit distance over the remaining words
+ * in a BK-tree. Each word may only take a few edits for its length (none for
+ * short suffixes like "St" and "Rd"), and a match must be the single closest
+ * one; anything else comes back as -1 so it is reported up front instead of
+ * showing up as "Distance not found" while routing.
+ */
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AddressIndex {
+
+    /** Street words and their short form, applied token by token. */
+    private static final Map<String, String> ABBREVIATIONS = Map.ofEntries(
+            Map.entry("north", "n"), Map.entry("south", "s"), Map.entry("east", "e"), Map.entry("west", "w"),
+            Map.entry("street", "st"), Map.entry("avenue", "ave"), Map.entry("av", "ave"),
+            Map.entry("boulevard", "blvd"), Map.entry("road", "rd"), Map.entry("drive", "dr"),
+            Map.entry("lane", "ln"), Map.entry("court", "ct"), Map.entry("parkway", "pkwy"),
+            Map.entry("pky", "pkwy"), Map.entry("suite", "#"), Map.entry("ste", "#"), Map.entry("apt", "#"));
+
+    /** Node of a BK-tree over the words of one bucket, children keyed by distance to this node. */
+    private static final class Node {
+        final String[] words;
+        final int id;
+        final HashMap<Integer, Node> children = new HashMap<>();
+
+        Node(String[] words, int id) {
+            this.words = words;
+            this.id = id;
+        }
+    }
+
+    private final DistanceGraph graph;
+    private final HashMap<String, Integer> exact = new HashMap<>();
+
+    /** One BK-tree per skeleton (the exact tokens with every word replaced by "*"). */
+    private final HashMap<String, Node> trees = new HashMap<>();
+
+    /** Most edits a fuzzy match may need over all of its words. */
+    private final int maxEdits;
+
+    /**
+     * Builds the index from every address in the graph.
+     *
+     * @param graph    distance graph, indexes returned are graph.indexOf indexes
+     * @param maxEdits most single character edits allowed for a fuzzy match
+     */
+    public AddressIndex(DistanceGraph graph, int maxEdits) {
+        this.graph = graph;
+        this.maxEdits = maxEdits;
+        for (int i = 0; i < graph.size(); i++) {
+            String key = canonical(graph.addressOf(i));
+            // Two table entries with the same canonical form, keep the first
+            if (exact.putIfAbsent(key, i) == null)
+                insert(key, i);
+        }
+    }
+
+    /**
+     * Reduces an address to canonical tokens separated by single spaces.
+     *
+     * @param raw address as written in a CSV file
+     * @return canonical form, "" for null
+     */
+    public static String canonical(String raw) {
+        if (raw == null)
+            return "";
+        StringBuilder key = new StringBuilder();
+        String cleaned = raw.toLowerCase()
+                .replaceAll("\\(.*?\\)", " ") // zip codes and notes
+                .replace("#", " # ")
+                .replaceAll("[^a-z0-9# ]", " ");
+        for (String token : cleaned.trim().split("\\s+")) {
+            if (token.isEmpty())
+                continue;
+            if (key.length() > 0)
+                key.append(' ');
+            key.append(ABBREVIATIONS.getOrDefault(token, token));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Finds the graph index of an address.
+     *
+     * @param address address to look up, in any spelling
+     * @return graph index, or -1 if nothing matches or the match is ambiguous
+     */
+    public int resolve(String address) {
+        String key = canonical(address);
+        Integer id = exact.get(key);
+        if (id != null)
+            return id;
+        return fuzzy(key);
+    }
+
+    /**
+     * @param index graph index returned by resolve
+     * @return the address as the distance table spells it
+     */
+    public String addressOf(int index) {
+        return graph.addressOf(index);
+    }
+
+    // Words that may be fuzzy matched: letters only, longer than a direction
+    private static boolean isWord(String token) {
+        return token.length() > 1 && token.chars().allMatch(c -> c >= 'a' && c <= 'z');
+    }
+
+    // Canonical key with every word replaced by "*", numbers, directions and '#' kept
+    private static String skeleton(String key) {
+        StringBuilder skeleton = new StringBuilder();
+        for (String token : key.split(" ")) {
+            if (skeleton.length() > 0)
+                skeleton.append(' ');
+            skeleton.append(isWord(token) ? "*" : token);
+        }
+        return skeleton.toString();
+    }
+
+    private static String[] words(String key) {
+        List<String> words = new ArrayList<>();
+        for (String token : key.split(" ")) {
+            if (isWord(token))
+                words.add(token);
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private void insert(String key, int id) {
+        String[] words = words(key);
+        Node node = trees.get(skeleton(key));
+        if (node == null) {
+            trees.put(skeleton(key), new Node(words, id));
+            return;
+        }
+        while (true) {
+            int d = distance(words, node.words);
+            Node child = node.children.get(d);
+            if (child == null) {
+                node.children.put(d, new Node(words, id));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    // Closest address with the same skeleton within maxEdits, -1 if none or if two are equally close
+    private int fuzzy(String key) {
+        Node root = trees.get(skeleton(key));
+        if (root == null)
+            return -1;
+        String[] words = words(key);
+        int bestDistance = maxEdits + 1;
+        int bestId = -1;
+        boolean tie = false;
+
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int d = distance(words, node.words);
+            if (d <= maxEdits && withinWordLimits(words, node.words)) {
+                if (d < bestDistance) {
+                    bestDistance = d;
+                    bestId = node.id;
+                    tie = false;
+                } else if (d == bestDistance) {
+                    tie = true;
+                }
+            }
+            // Triangle inequality: only children at distance d +/- maxEdits can match
+            for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - d) <= maxEdits)
+                    pending.push(child.getValue());
+            }
+        }
+        return tie ? -1 : bestId;
+    }
+
+    // Sum of edit distances word by word, words of one skeleton line up one to one
+    private static int distance(String[] a, String[] b) {
+        int total = 0;
+        for (int i = 0; i < a.length; i++)
+            total += editDistance(a[i], b[i]);
+        return total;
+    }
+
+    // A word may take one edit per four letters of the table's spelling, so "St" or "Rd" take none
+    private static boolean withinWordLimits(String[] words, String[] tableWords) {
+        for (int i = 0; i < words.length; i++) {
+            if (editDistance(words[i], tableWords[i]) > tableWords[i].length() / 4)
+                return false;
+        }
+        return true;
+    }
+
+    // Levenshtein distance with two rows
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++)
+            previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
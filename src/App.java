@@ -1,10 +1,14 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.ToDoubleBiFunction;
 
 /**
  * Main entry point for the WGUPS Delivery System.
@@ -14,11 +18,52 @@ import java.util.Set;
  * implementation.
  */
 public class App {
+
+    /** Routes already computed this run, keyed by stop set, start and departure time. */
+    private static final RoutePlanCache routeCache = new RoutePlanCache(256);
+
+    /** Zones to route trucks through with --zoned, null routes over the flat address list. */
+    private static ZoneDecomposition zones;
+
+    /** Delivery order per truck number planned with --optimize, empty when off. */
+    private static final Map<Integer, List<Package>> plannedRoutes = new HashMap<>();
+
+    /** Trace file every delivery is recorded to with --trace-file, null when off. */
+    private static TraceWriter traceWriter;
+
+    /** With --nearest-hub trucks end each trip at the closest hub instead of their own. */
+    private static boolean endAtNearestHub;
+
+    /** Every command line option, see README.md. */
+    private static final List<String> OPTIONS = List.of("--columnar", "--zoned", "--trace-file", "--trace-format",
+            "--pack", "--optimize", "--optimize-seed", "--optimize-threads", "--live", "--reroute", "--what-if",
+            "--stats", "--hubs", "--truck-hub", "--nearest-hub", "--cache-stats");
+
+    private static final String USAGE = "Usage: java App [--columnar] [--zoned[=size]] [--trace-file=path]"
+            + " [--trace-format=csv] [--pack] [--optimize[=millis]] [--optimize-seed=n] [--optimize-threads=n]"
+            + " [--live[=minutesPerSecond]] [--reroute=truck:id,id] [--what-if=HH:MM] [--stats[=path]]"
+            + " [--hubs=address;address] [--truck-hub=truck:address;truck:address] [--nearest-hub] [--cache-stats]";
+
     public static void main(String[] args) {
+        // Bad options stop here with the usage, not with an exception once the trucks are out
+        String problem = checkOptions(args);
+        if (problem != null) {
+            System.err.println(problem);
+            System.err.println(USAGE);
+            return;
+        }
+        // --what-if=HH:MM re-runs truck3 at the end, read as 24 hour time so "9:00" is 09:00
+        String whatIf = flagValue(args, "--what-if");
+        if (whatIf != null)
+            whatIf = minutesToTime(parseClockTime(whatIf));
+
         System.out.print("Booting WGUPS Delivery System..");
 
         // Initialize PackageHashTable and DistanceGraph
-        PackageHashTable pkgTable = new PackageHashTable();
+        // --columnar keeps package data in a ColumnarPackageStore, the table hands out views of it
+        PackageHashTable pkgTable = hasFlag(args, "--columnar")
+                ? new PackageHashTable(new ColumnarPackageStore(64))
+                : new PackageHashTable();
         System.out.print("..");
         DistanceGraph graph = new DistanceGraph();
         System.out.println("Done");
@@ -34,48 +79,295 @@ public class App {
         loadDistancesFromCSV("WGUPS_Distance_Table.csv", graph);
         System.out.println("..Done");
 
+        // Match every package address to the distance table once, routing then uses int indexes
+        AddressIndex addressIndex = new AddressIndex(graph, 2);
+        resolvePackageAddresses(pkgTable, addressIndex);
+
+        // HUB is always a depot, --hubs=address;address adds the other hubs, --nearest-hub ends trips at the closest
+        graph.addDepot("HUB");
+        String hubs = flagValue(args, "--hubs");
+        if (hubs != null && !hubs.isEmpty())
+            addHubs(graph, addressIndex, hubs.split(";"));
+        endAtNearestHub = hasFlag(args, "--nearest-hub");
+        // --truck-hub=truck:address;truck:address bases those trucks at another hub, the rest start from HUB
+        Map<Integer, String> homeHubs = assignTruckHubs(graph, addressIndex, flagValue(args, "--truck-hub"));
+
+        // --zoned[=size] clusters addresses into zones and routes zone by zone
+        String zoneSize = flagValue(args, "--zoned");
+        if (zoneSize != null) {
+            zones = new ZoneDecomposition(graph.getAddresses(), graph::lookupDistance,
+                    zoneSize.isEmpty() ? 8 : Integer.parseInt(zoneSize));
+            System.out.println("Routing through " + zones.getZoneCount() + " zones");
+        }
+
         // Debug test
         // prints all the distances
         // graph.printAllDistances();
 
+        // --trace-file=path records every delivery, --trace-format=csv for CSV instead of binary
+        String traceFile = flagValue(args, "--trace-file");
+        if (traceFile != null && !traceFile.isEmpty()) {
+            TraceWriter.Format format = "csv".equalsIgnoreCase(flagValue(args, "--trace-format"))
+                    ? TraceWriter.Format.CSV
+                    : TraceWriter.Format.BINARY;
+            try {
+                traceWriter = new TraceWriter(Path.of(traceFile), format, 1 << 16);
+            } catch (IOException e) {
+                System.err.println("Error opening trace file: " + e.getMessage());
+            }
+        }
+
         // Initialize trucks
-        Truck truck1 = new Truck();
-        Truck truck2 = new Truck();
-        Truck truck3 = new Truck();
+        Truck truck1 = new Truck(1, homeHubs.getOrDefault(1, "HUB"));
+        Truck truck2 = new Truck(2, homeHubs.getOrDefault(2, "HUB"));
+        Truck truck3 = new Truck(3, homeHubs.getOrDefault(3, "HUB"));
 
-        // Load packages into trucks
-        loadTrucks(pkgTable, truck1, truck2, truck3);
+        // Load packages into trucks, --pack uses weight/volume bin packing instead of deadline order
+        if (hasFlag(args, "--pack")) {
+            packTrucks(pkgTable, truck1, truck2, truck3);
+        } else {
+            loadTrucks(pkgTable, truck1, truck2, truck3);
+        }
 
-        // Deliver packages using Nearest Neighbor routing algo
-        deliverAllPackages(truck1, pkgTable, graph, true);
-        deliverAllPackages(truck2, pkgTable, graph);
+        // --optimize[=millis] replans every loaded package with the large neighbourhood search
+        String optimizeMillis = flagValue(args, "--optimize");
+        if (optimizeMillis != null) {
+            // --optimize-seed and --optimize-threads fix the search, the same values plan the same routes anywhere
+            String seed = flagValue(args, "--optimize-seed");
+            String threads = flagValue(args, "--optimize-threads");
+            optimizeTrucks(graph, optimizeMillis.isEmpty() ? 2000 : Long.parseLong(optimizeMillis),
+                    seed == null || seed.isEmpty() ? 42L : Long.parseLong(seed),
+                    threads == null || threads.isEmpty() ? 4 : Integer.parseInt(threads),
+                    truck1, truck2, truck3);
+        }
 
-        // Set truck3's start time to the earlier finish time of truck1 or truck2
-        if (timeToMinutes(truck1.getCurrentTime()) < timeToMinutes(truck2.getCurrentTime())) {
-            truck3.setCurrentTime(truck1.getCurrentTime());
+        // --live[=minutesPerSecond] runs each truck on its own virtual thread in simulated time
+        String liveScale = flagValue(args, "--live");
+        if (liveScale != null) {
+            runLive(truck1, truck2, truck3, pkgTable, graph,
+                    liveScale.isEmpty() ? 120.0 : Double.parseDouble(liveScale), flagValue(args, "--reroute"));
         } else {
-            truck3.setCurrentTime(truck2.getCurrentTime());
-        }
+            // Deliver packages using Nearest Neighbor routing algo
+            deliverAllPackages(truck1, pkgTable, graph, true);
+            deliverAllPackages(truck2, pkgTable, graph);
+
+            // Truck3 leaves when the first driver back can get to its hub
+            assignDriver(truck3, graph, truck1, truck2);
+
+            System.out.println("Truck3 departs at " + truck3.getCurrentTime());
 
-        System.out.println("Truck3 departs at " + truck3.getCurrentTime());
-        deliverAllPackages(truck3, pkgTable, graph);
+            // --what-if=HH:MM also runs truck3 from a snapshot with a different departure time
+            List<Truck> fleet = List.of(truck1, truck2, truck3);
+            SimulationSnapshot beforeTruck3 = whatIf != null
+                    ? SimulationSnapshot.capture(pkgTable, fleet, null)
+                    : null;
+
+            deliverAllPackages(truck3, pkgTable, graph);
+
+            if (beforeTruck3 != null)
+                runWhatIf(beforeTruck3, whatIf, truck3, fleet, pkgTable, graph);
+        }
 
         // improvement note: make method for managing trucks, current does not check to
         // see if truck1 needs to be filled up and cued to be sent back out
 
         // Display final delivery statuses of all packages
         pkgTable.displayAllPackages();
+        if (traceWriter != null) {
+            pkgTable.recordAllPackages(traceWriter);
+            traceWriter.close();
+            System.out.println("Trace written to " + traceFile + " (" + traceWriter.getEventCount() + " events)");
+        }
 
         // Display truck mileages
         System.out.println("----- Truck Summary -----");
-        System.out.printf("Truck 1 mileage: %.2f miles, Returned to HUB at: %s%n",
-                truck1.getMileage(), truck1.getCurrentTime());
-        System.out.printf("Truck 2 mileage: %.2f miles, Returned to HUB at: %s%n",
-                truck2.getMileage(), truck2.getCurrentTime());
-        System.out.printf("Truck 3 mileage: %.2f miles, Returned to HUB at: %s%n",
-                truck3.getMileage(), truck3.getCurrentTime());
+        System.out.printf("Truck 1 mileage: %.2f miles, Returned to %s at: %s%n",
+                truck1.getMileage(), truck1.getCurrentLocation(), truck1.getCurrentTime());
+        System.out.printf("Truck 2 mileage: %.2f miles, Returned to %s at: %s%n",
+                truck2.getMileage(), truck2.getCurrentLocation(), truck2.getCurrentTime());
+        System.out.printf("Truck 3 mileage: %.2f miles, Returned to %s at: %s%n",
+                truck3.getMileage(), truck3.getCurrentLocation(), truck3.getCurrentTime());
         System.out.printf("Total Miles driven by Trucks: %.2f miles%n",
                 truck1.getMileage() + truck2.getMileage() + truck3.getMileage());
+        int late = countLate(pkgTable);
+        if (late > 0)
+            System.out.println("Warning: " + late + " packages were delivered after their deadline");
+        // --cache-stats reports route cache use, off by default as one run rarely drives the same load twice
+        if (hasFlag(args, "--cache-stats") && routeCache.getHits() + routeCache.getMisses() == 0)
+            System.out.println("Route cache: not used, only nearest neighbor routes are cached");
+        else if (hasFlag(args, "--cache-stats"))
+            System.out.printf("Route cache: %d hits, %d misses, %d evictions, %.0f%% hit rate%n", routeCache.getHits(),
+                    routeCache.getMisses(), routeCache.getEvictions(), routeCache.getHitRate() * 100);
+
+        // How far each truck's route is from the best possible tour over the same stops
+        RouteEvaluator.printReport(RouteEvaluator.evaluate(List.of(truck1, truck2, truck3), graph));
+
+        // --stats[=path] writes on-time rate, lateness percentiles and fleet utilisation as JSON
+        String statsFile = flagValue(args, "--stats");
+        if (statsFile != null)
+            writeDeliveryStats(statsFile.isEmpty() ? "delivery_stats.json" : statsFile, pkgTable,
+                    truck1, truck2, truck3);
+    }
+
+    /**
+     * Computes delivery statistics in one pass over the packages and trucks
+     * and writes them to a JSON file.
+     * Two drivers start at 08:00, EOD packages are due by 17:00.
+     *
+     * @param fileName file to write
+     * @param pkgTable the hash table containing all packages
+     * @param trucks   trucks that finished their day
+     */
+    private static void writeDeliveryStats(String fileName, PackageHashTable pkgTable, Truck... trucks) {
+        DeliveryStats stats = new DeliveryStats(2, timeToMinutes("08:00"), timeToMinutes("17:00"));
+        for (int id : pkgTable.getPackageIds())
+            stats.addPackage(pkgTable.getPackage(id));
+        for (Truck truck : trucks)
+            stats.addTruck(truck);
+
+        try {
+            stats.writeJson(Path.of(fileName));
+            System.out.printf("Delivery stats written to %s (%.1f%% on time, p95 lateness %.0f min)%n",
+                    fileName, stats.getOnTimeRate() * 100, stats.getLateness(0.95));
+        } catch (IOException e) {
+            System.err.println("Error writing delivery stats: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs the loaded trucks as a live simulation, one virtual thread per truck.
+     * Trucks 1 and 2 leave at 08:00, truck 3 leaves with whichever driver can
+     * be at its hub first in simulated time, when that driver gets there or
+     * at its own start if later. A reroute like "1:15,13" sends truck 1 to
+     * packages 15 then 13 from its next stop on.
+     *
+     * @param truck1           first truck (active)
+     * @param truck2           second truck (active)
+     * @param truck3           third truck (staged until a driver returns)
+     * @param pkgTable         shared package table
+     * @param graph            distance graph
+     * @param minutesPerSecond simulated minutes per real second
+     * @param reroute          truck:packageId,packageId... to deliver first, or null
+     */
+    private static void runLive(Truck truck1, Truck truck2, Truck truck3, PackageHashTable pkgTable,
+            DistanceGraph graph, double minutesPerSecond, String reroute) {
+        // Truck 3 has no driver yet, hold its packages until someone returns
+        List<Package> staged = truck3.unloadAll();
+
+        SimulationClock clock = new SimulationClock(timeToMinutes(truck1.getCurrentTime()), minutesPerSecond);
+        LiveSimulation sim = new LiveSimulation(pkgTable, graph, clock, traceWriter);
+        System.out.printf("Running live simulation at %.0f simulated minutes per second%n", minutesPerSecond);
+
+        try {
+            sim.addTruck(truck1);
+            sim.addTruck(truck2);
+            sim.addTruck(truck3);
+
+            // --reroute=truck:id,id puts those packages at the front of the truck's remaining route
+            if (reroute != null && !reroute.isEmpty()) {
+                try {
+                    String[] parts = reroute.split(":");
+                    List<Integer> order = new ArrayList<>();
+                    for (String id : parts[1].split(","))
+                        order.add(Integer.parseInt(id.trim()));
+                    sim.reroute(Integer.parseInt(parts[0].trim()), order);
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    System.out.println("Invalid --reroute, expected truck:packageId,packageId... : " + reroute);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Invalid --reroute: " + e.getMessage());
+                }
+            }
+
+            // First driver at truck3's hub in simulated time takes it, truck3 cannot leave before its own start
+            String hub = truck3.getHomeHub();
+            Map<Integer, Double> driveOver = new HashMap<>();
+            for (Truck driver : List.of(truck1, truck2)) {
+                double distance = driver.getHomeHub().equals(hub) ? 0.0 : hubDistance(graph, driver.getHomeHub(), hub);
+                if (distance >= 0)
+                    driveOver.put(driver.getTruckId(), distance);
+            }
+            if (driveOver.isEmpty()) {
+                System.out.println("No driver can reach " + hub);
+                sim.shutdown();
+                return;
+            }
+            Map<Integer, Double> driveMinutes = new HashMap<>();
+            driveOver.forEach((truckId, distance) -> driveMinutes.put(truckId, distance / Truck.SPEED_MPH * 60));
+            int returned = sim.awaitFirstReturn(driveMinutes);
+            Truck driver = returned == truck1.getTruckId() ? truck1 : truck2;
+            // Whole minutes like Truck keeps its time, so this matches the driver's arrival
+            int returnMinute = (int) sim.getReturnMinute(returned);
+            int departure = Math.max(returnMinute + driveMinutes.get(returned).intValue(),
+                    timeToMinutes(truck3.getCurrentTime()));
+            System.out.println("Truck" + returned + " back at " + driver.getHomeHub() + " at "
+                    + minutesToTime(returnMinute) + ", Truck3 departs at " + minutesToTime(departure));
+            sim.dispatch(truck3.getTruckId(), staged, departure);
+
+            sim.shutdown();
+
+            // The driver takes their own truck across, once its actor has stopped
+            double distance = driveOver.get(returned);
+            if (distance > 0) {
+                System.out.printf("Truck %d driver drives from '%s' to '%s' [%.2f miles] for truck %d%n",
+                        returned, driver.getHomeHub(), hub, distance, truck3.getTruckId());
+                returnAndTrace(driver, driver.getHomeHub(), hub, distance, false);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Live simulation interrupted");
+        }
+    }
+
+    /**
+     * Re-runs a truck from a snapshot with a different departure time, prints
+     * how it compares, then puts the simulation back to the original run.
+     *
+     * @param before    snapshot taken right before the truck departed
+     * @param departure departure time to try (HH:MM)
+     * @param truck     truck to re-run
+     * @param fleet     every truck of the simulation
+     * @param pkgTable  package table of the simulation
+     * @param graph     distance graph
+     */
+    private static void runWhatIf(SimulationSnapshot before, String departure, Truck truck, List<Truck> fleet,
+            PackageHashTable pkgTable, DistanceGraph graph) {
+        String baseReturn = truck.getCurrentTime();
+        double baseMileage = truck.getMileage();
+        int baseLate = countLate(pkgTable);
+        SimulationSnapshot baseline = SimulationSnapshot.capture(pkgTable, fleet, before);
+
+        SimulationSnapshot branch = before.fork();
+        branch.setTruckTime(truck.getTruckId(), departure);
+        branch.restore(pkgTable, fleet, baseline);
+
+        // Keep the branch out of the trace, it is not what happened
+        TraceWriter savedTrace = traceWriter;
+        traceWriter = null;
+        deliverAllPackages(truck, pkgTable, graph);
+        traceWriter = savedTrace;
+
+        System.out.printf("What if Truck%d departs at %s: returns at %s (was %s), %.2f miles (was %.2f), "
+                + "%d late packages (was %d)%n", truck.getTruckId(), departure, truck.getCurrentTime(), baseReturn,
+                truck.getMileage(), baseMileage, countLate(pkgTable), baseLate);
+
+        baseline.restore(pkgTable, fleet, branch);
+    }
+
+    /**
+     * Counts delivered packages that were delivered after their deadline.
+     *
+     * @param pkgTable the hash table containing all packages
+     * @return number of late packages
+     */
+    private static int countLate(PackageHashTable pkgTable) {
+        int late = 0;
+        for (int id : pkgTable.getPackageIds()) {
+            Package pkg = pkgTable.getPackage(id);
+            if (pkg.getStatus().equals("Delivered")
+                    && timeToMinutes(pkg.getDeliveryTime()) > timeToMinutes(pkg.getDeadline()))
+                late++;
+        }
+        return late;
     }
 
     /**
@@ -123,11 +415,11 @@ public class App {
 
             // find which truck has space starting with 1
             Truck targetTruck = null;
-            if (truck1.getLoadedPackages().size() < Truck.MAX_CAPACITY) {
+            if (truck1.canLoad(pkg)) {
                 targetTruck = truck1;
-            } else if (truck2.getLoadedPackages().size() < Truck.MAX_CAPACITY) {
+            } else if (truck2.canLoad(pkg)) {
                 targetTruck = truck2;
-            } else if (truck3.getLoadedPackages().size() < Truck.MAX_CAPACITY) {
+            } else if (truck3.canLoad(pkg)) {
                 targetTruck = truck3;
             }
 
@@ -150,7 +442,7 @@ public class App {
                 }
 
                 // Only load group if it fits entirely
-                if (targetTruck.getLoadedPackages().size() + group.size() <= Truck.MAX_CAPACITY) {
+                if (targetTruck.canLoad(group)) {
                     for (Package p : group) {
                         targetTruck.loadPackage(p);
                         loadedIds.add(p.getPackageId());
@@ -171,6 +463,73 @@ public class App {
                         " packages (waiting for driver).");
     }
 
+    /**
+     * Loads packages into trucks with first-fit-decreasing bin packing over
+     * package count, weight and volume. Fills trucks as full as possible but
+     * does not look at deadlines.
+     *
+     * @param pkgTable the hash table containing all packages
+     * @param truck1   first truck (active)
+     * @param truck2   second truck (active)
+     * @param truck3   third truck (staged until a driver returns)
+     */
+    private static void packTrucks(PackageHashTable pkgTable, Truck truck1, Truck truck2, Truck truck3) {
+        List<Package> allPackages = new ArrayList<>();
+        for (int i = 1; i <= pkgTable.size(); i++) {
+            Package pkg = pkgTable.getPackage(i);
+            if (pkg != null)
+                allPackages.add(pkg);
+        }
+
+        System.out.println("Warning: --pack loads by weight and volume only, delivery deadlines are not checked");
+        List<Truck> trucks = List.of(truck1, truck2, truck3);
+        List<Package> leftOver = BinPacker.pack(allPackages, trucks);
+        for (Truck truck : trucks) {
+            System.out.printf("Truck%d loaded with %d packages, %.0f kg.%n", truck.getTruckId(),
+                    truck.getLoadedPackages().size(), truck.getLoadedWeight());
+        }
+        if (!leftOver.isEmpty())
+            System.out.println(leftOver.size() + " packages did not fit in any truck.");
+    }
+
+    /**
+     * Takes every package off the trucks and reloads them following a plan
+     * from RouteOptimizer. The planned order is used when the trucks deliver.
+     * Two drivers, so the last truck leaves when the first one is back, as
+     * it does when the plan is driven. The seed and thread count are given,
+     * not taken from the machine, so the same arguments plan the same routes
+     * everywhere unless the time budget cuts the search short.
+     *
+     * @param graph        distance graph
+     * @param budgetMillis wall clock limit for the search
+     * @param seed         random seed
+     * @param threads      number of parallel searches
+     * @param trucks       trucks to plan for, the one waiting for a driver last
+     */
+    private static void optimizeTrucks(DistanceGraph graph, long budgetMillis, long seed, int threads,
+            Truck... trucks) {
+        List<Package> packages = new ArrayList<>();
+        for (Truck truck : trucks)
+            packages.addAll(truck.unloadAll());
+
+        RouteOptimizer optimizer = new RouteOptimizer(graph, seed, threads);
+        optimizer.setDrivers(2);
+        optimizer.setMaxIterations(20_000);
+        optimizer.setTimeBudgetMillis(budgetMillis);
+        optimizer.setEarlyStopIterations(5_000);
+        RouteOptimizer.Plan plan = optimizer.optimize(packages, List.of(trucks));
+
+        for (int i = 0; i < trucks.length; i++) {
+            for (Package pkg : plan.getRoute(i))
+                trucks[i].loadPackage(pkg);
+            plannedRoutes.put(trucks[i].getTruckId(), plan.getRoute(i));
+        }
+        System.out.printf("Optimizer planned %.2f miles in %d iterations on %d threads (seed %d)%n",
+                plan.getMiles(), plan.getIterations(), threads, seed);
+        if (!plan.getUnassigned().isEmpty())
+            System.out.println(plan.getUnassigned().size() + " packages could not be planned on any truck.");
+    }
+
     /**
      * Loads distance matrix from a CSV file into a provided DistanceGraph.
      * Use the WGUPS_Distance_Table.csv File, simple csv copy of WGUPS Distantance
@@ -265,8 +624,8 @@ public class App {
                 // has length over 7, if less than 7 no special note so avoid out an of bounds
                 String specialNote = (values.length > 7) ? values[7].trim() : "";
 
-                Package pkg = new Package(packageId, address, city, state, zip, deadline, weight, specialNote);
-                pkgTable.addPackage(pkg);
+                // A table backed by a ColumnarPackageStore takes the values straight into its columns
+                pkgTable.addPackage(packageId, address, city, state, zip, deadline, weight, specialNote);
             }
 
         } catch (IOException e) {
@@ -276,6 +635,38 @@ public class App {
         }
     }
 
+    /**
+     * Resolves every package address to its DistanceGraph index and reports
+     * the ones that do not match before any routing starts. Addresses that
+     * only match fuzzily are rewritten to the distance table's spelling so
+     * string lookups find them too.
+     *
+     * @param pkgTable the hash table containing all packages
+     * @param index    address index built from the distance graph
+     * @return number of packages whose address could not be resolved
+     */
+    private static int resolvePackageAddresses(PackageHashTable pkgTable, AddressIndex index) {
+        int unresolved = 0;
+        for (int id : pkgTable.getPackageIds().stream().sorted().toList()) {
+            Package pkg = pkgTable.getPackage(id);
+            int addressId = index.resolve(pkg.getAddress());
+            if (addressId < 0) {
+                System.out.println("No distance table address matches Package #" + id + ": " + pkg.getAddress());
+                unresolved++;
+                continue;
+            }
+            String tableAddress = index.addressOf(addressId);
+            if (!tableAddress.equals(pkg.getAddress())) {
+                System.out.printf("Package #%d address '%s' matched to '%s'%n", id, pkg.getAddress(), tableAddress);
+                pkg.setAddress(tableAddress);
+            }
+            pkg.setAddressId(addressId);
+        }
+        if (unresolved > 0)
+            System.out.println(unresolved + " packages have addresses missing from the distance table.");
+        return unresolved;
+    }
+
     /**
      * Delivers all packages loaded onto a truck using nearest Neighbor logic.
      * Handles sending the truck home
@@ -305,45 +696,300 @@ public class App {
             System.out.println("Truck starting at HUB\n");
         }
 
+        if (zones != null) {
+            deliverByZone(truck, pkgTable, graph, trace);
+            return;
+        }
+        // Kept, not removed, so a what-if re-run of the truck drives the same plan
+        List<Package> planned = plannedRoutes.get(truck.getTruckId());
+        if (planned != null) {
+            deliverInOrder(truck, planned, graph::getDistance, pkgTable, trace);
+            returnToDepot(truck, graph, trace);
+            return;
+        }
+
+        // Same stops, start and departure time route the same way, reuse the plan
+        Set<String> stopSet = new HashSet<>();
+        for (Package pkg : truck.getLoadedPackages())
+            stopSet.add(cleanAddress(pkg.getAddress()));
+        RoutePlanCache.Key planKey = RoutePlanCache.keyOf(stopSet,
+                cleanAddress(truck.getCurrentLocation()), truck.getCurrentTime());
+        RoutePlanCache.RoutePlan plan = routeCache.get(planKey);
+        if (plan != null) {
+            replayRoute(plan, truck, pkgTable, graph, trace);
+            return;
+        }
+
+        // Distinct stops and legs driven, recorded for the route cache
+        List<String> stops = new ArrayList<>();
+        List<Double> legs = new ArrayList<>();
+        boolean complete = true;
+
+        // Graph index of the truck's location, looked up once, then taken from each delivered package
+        int at = graph.indexOf(cleanAddress(truck.getCurrentLocation()));
+
         // While not empty
         while (!truck.getLoadedPackages().isEmpty()) {
-            Package nextPkg = findNearestPackage(truck, graph);
+            Package nextPkg = findNearestPackage(truck, graph, at);
 
             // shouldn't happen but just incase to handle no packages
             if (nextPkg == null) {
                 if (trace)
                     System.out.println("No valid package found from current location: " + truck.getCurrentLocation());
+                complete = false;
                 break;
             }
 
             String from = cleanAddress(truck.getCurrentLocation());
             String to = cleanAddress(nextPkg.getAddress());
-            double distance = graph.getDistance(from, to);
+            double distance = at >= 0 && nextPkg.getAddressId() >= 0
+                    ? graph.getDistance(at, nextPkg.getAddressId())
+                    : graph.getDistance(from, to);
+            at = nextPkg.getAddressId();
+
+            if (stops.isEmpty() || !stops.get(stops.size() - 1).equals(to)) {
+                stops.add(to);
+                legs.add(distance);
+            }
 
-            if (trace)
-                System.out.printf("Driving from '%s' to '%s' [%.2f miles]%n", from, to, distance);
+            deliverAndTrace(truck, nextPkg, from, to, distance, pkgTable, trace);
+        }
 
-            truck.deliverPackage(nextPkg, distance);
-            pkgTable.updatePackageStatus(nextPkg.getPackageId(), "Delivered", truck.getCurrentTime());
+        // Return to HUB, done delivering packages
+        returnToDepot(truck, graph, trace);
 
-            if (trace) {
-                System.out.printf("Delivered Package #%d at %s%n", nextPkg.getPackageId(), truck.getCurrentTime());
-                System.out.printf("Truck mileage: %.2f miles%n%n", truck.getMileage());
+        if (complete)
+            routeCache.put(planKey, new RoutePlanCache.RoutePlan(stops, legs));
+    }
+
+    /**
+     * Delivers a truck's packages following a cached route plan instead of
+     * searching for the nearest package at every stop.
+     * Packages sharing a stop are delivered back to back, the same way the
+     * nearest neighbor search handles them (0 miles between them).
+     *
+     * The return leg is looked up again rather than replayed, the hub to end
+     * at depends on the truck and --nearest-hub, not on the stops.
+     *
+     * @param plan     cached plan for the truck's stop set
+     * @param truck    the truck performing deliveries
+     * @param pkgTable reference to package hash table for status updates
+     * @param graph    distance graph used for the return leg
+     * @param trace    True turns trace on, False turns trace off
+     */
+    private static void replayRoute(RoutePlanCache.RoutePlan plan, Truck truck, PackageHashTable pkgTable,
+            DistanceGraph graph, boolean trace) {
+        for (int i = 0; i < plan.stopCount(); i++) {
+            String stop = plan.getStop(i);
+            double distance = plan.getLeg(i);
+
+            // copy, deliverPackage removes from the loaded list
+            for (Package pkg : new ArrayList<>(truck.getLoadedPackages())) {
+                if (!cleanAddress(pkg.getAddress()).equals(stop))
+                    continue;
+                String from = cleanAddress(truck.getCurrentLocation());
+                deliverAndTrace(truck, pkg, from, stop, distance, pkgTable, trace);
+                distance = 0.0;
             }
         }
 
-        // Return to HUB, done delivering packages
+        returnToDepot(truck, graph, trace);
+    }
+
+    /**
+     * Delivers a truck's packages zone by zone using the zone decomposition.
+     * The zones only pick the order, every leg is charged the graph's real
+     * distance and the truck returns like any other (see returnToDepot).
+     * Zones are routed one after another on this thread.
+     *
+     * @param truck    the truck performing deliveries
+     * @param pkgTable reference to package hash table for status updates
+     * @param graph    distance graph
+     * @param trace    True turns trace on, False turns trace off
+     */
+    private static void deliverByZone(Truck truck, PackageHashTable pkgTable, DistanceGraph graph,
+            boolean trace) {
+        List<Package> order = zones.route(new ArrayList<>(truck.getLoadedPackages()),
+                cleanAddress(truck.getCurrentLocation()));
+        deliverInOrder(truck, order, graph::getDistance, pkgTable, trace);
+        returnToDepot(truck, graph, trace);
+    }
+
+    /**
+     * Delivers a truck's packages in a fixed order, the caller sends it home.
+     *
+     * @param truck    the truck performing deliveries
+     * @param order    packages in delivery order
+     * @param distance distance between two addresses, negative if unknown
+     * @param pkgTable reference to package hash table for status updates
+     * @param trace    True turns trace on, False turns trace off
+     */
+    private static void deliverInOrder(Truck truck, List<Package> order, ToDoubleBiFunction<String, String> distance,
+            PackageHashTable pkgTable, boolean trace) {
+        for (Package pkg : order) {
+            String from = cleanAddress(truck.getCurrentLocation());
+            String to = cleanAddress(pkg.getAddress());
+            double leg = distance.applyAsDouble(from, to);
+            if (leg < 0) {
+                System.out.println("No distance from " + from + " to " + to);
+                break;
+            }
+            deliverAndTrace(truck, pkg, from, to, leg, pkgTable, trace);
+        }
+    }
+
+    /**
+     * Sends a truck back to its own hub, or with --nearest-hub to whichever
+     * hub is closest. Both are array reads from the graph's depot vectors.
+     *
+     * @param truck the truck returning
+     * @param graph distance graph
+     * @param trace True turns trace on, False turns trace off
+     */
+    private static void returnToDepot(Truck truck, DistanceGraph graph, boolean trace) {
         String returnFrom = cleanAddress(truck.getCurrentLocation());
-        double returnDistance = graph.getDistance(returnFrom, "HUB");
+        int from = graph.indexOf(returnFrom);
+        int depot = graph.depotOf(truck.getHomeHub());
+        if (from >= 0 && endAtNearestHub && graph.nearestDepot(from) >= 0)
+            depot = graph.nearestDepot(from);
+
+        String hub = depot >= 0 ? graph.getDepot(depot) : truck.getHomeHub();
+        double returnDistance = from >= 0 && depot >= 0
+                ? graph.getDistanceToDepot(from, depot)
+                : graph.getDistance(returnFrom, hub); // prints the missing distance
+        returnAndTrace(truck, returnFrom, hub, returnDistance, trace);
+    }
 
+    /**
+     * Finds a driver for a truck waiting at its hub: whoever can be there
+     * first, counting the drive over from wherever they ended. The driver
+     * takes their own truck across, so those miles and minutes go on it,
+     * and the waiting truck departs when they arrive.
+     *
+     * @param waiting  truck without a driver
+     * @param graph    distance graph
+     * @param returned trucks whose drivers are done
+     */
+    private static void assignDriver(Truck waiting, DistanceGraph graph, Truck... returned) {
+        String hub = waiting.getHomeHub();
+        Truck driver = null;
+        double driverDistance = 0.0;
+        double driverArrival = Double.MAX_VALUE;
+        for (Truck truck : returned) {
+            String at = cleanAddress(truck.getCurrentLocation());
+            double distance = at.equals(hub) ? 0.0 : hubDistance(graph, at, hub);
+            if (distance < 0)
+                continue;
+            double arrival = timeToMinutes(truck.getCurrentTime()) + distance / Truck.SPEED_MPH * 60;
+            if (arrival < driverArrival) {
+                driver = truck;
+                driverDistance = distance;
+                driverArrival = arrival;
+            }
+        }
+        if (driver == null) {
+            System.out.println("No driver can reach " + hub);
+            return;
+        }
+
+        if (driverDistance > 0) {
+            System.out.printf("Truck %d driver drives from '%s' to '%s' [%.2f miles] for truck %d%n",
+                    driver.getTruckId(), driver.getCurrentLocation(), hub, driverDistance, waiting.getTruckId());
+            returnAndTrace(driver, cleanAddress(driver.getCurrentLocation()), hub, driverDistance, false);
+        }
+        waiting.setCurrentTime(driver.getCurrentTime());
+    }
+
+    // Distance between two hubs from the depot vectors, -1 if unknown
+    private static double hubDistance(DistanceGraph graph, String from, String hub) {
+        int index = graph.indexOf(from);
+        int depot = graph.depotOf(hub);
+        return index >= 0 && depot >= 0 ? graph.getDistanceToDepot(index, depot) : graph.lookupDistance(from, hub);
+    }
+
+    /**
+     * Registers extra hubs as depots, matching each to the distance table.
+     *
+     * @param graph        distance graph to add the depots to
+     * @param addressIndex address index of the distance graph
+     * @param addresses    hub addresses in any spelling
+     */
+    private static void addHubs(DistanceGraph graph, AddressIndex addressIndex, String... addresses) {
+        for (String address : addresses) {
+            int index = addressIndex.resolve(address);
+            if (index < 0) {
+                System.out.println("No distance table address matches hub: " + address);
+                continue;
+            }
+            graph.addDepot(graph.addressOf(index));
+        }
+        System.out.println("Operating from " + graph.getDepotCount() + " hubs");
+    }
+
+    /**
+     * Bases trucks at hubs other than HUB, registering each hub as a depot.
+     *
+     * @param graph        distance graph to add the depots to
+     * @param addressIndex address index of the distance graph
+     * @param assignments  "truck:address" pairs separated by ';', null for none
+     * @return home hub by truck number, only for trucks that were given one
+     */
+    private static Map<Integer, String> assignTruckHubs(DistanceGraph graph, AddressIndex addressIndex,
+            String assignments) {
+        Map<Integer, String> homeHubs = new HashMap<>();
+        if (assignments == null)
+            return homeHubs;
+        for (String assignment : assignments.split(";")) {
+            int colon = assignment.indexOf(':');
+            int truckId = Integer.parseInt(assignment.substring(0, colon).trim());
+            String address = assignment.substring(colon + 1).trim();
+            int index = addressIndex.resolve(address);
+            if (index < 0) {
+                System.out.println("No distance table address matches hub for truck " + truckId + ": " + address);
+                continue;
+            }
+            String hub = graph.addressOf(index);
+            graph.addDepot(hub);
+            homeHubs.put(truckId, hub);
+            System.out.println("Truck " + truckId + " is based at " + hub);
+        }
+        return homeHubs;
+    }
+
+    // Delivers one package and prints the trace lines for it
+    private static void deliverAndTrace(Truck truck, Package pkg, String from, String to, double distance,
+            PackageHashTable pkgTable, boolean trace) {
+        if (trace)
+            System.out.printf("Driving from '%s' to '%s' [%.2f miles]%n", from, to, distance);
+
+        truck.deliverPackage(pkg, distance);
+        pkgTable.updatePackageStatus(pkg.getPackageId(), "Delivered", truck.getCurrentTime());
+        if (traceWriter != null) {
+            traceWriter.drive(truck.getTruckId(), from, to, distance);
+            traceWriter.deliver(truck.getTruckId(), pkg.getPackageId(), to,
+                    timeToMinutes(truck.getCurrentTime()), truck.getMileage());
+        }
+
+        if (trace) {
+            System.out.printf("Delivered Package #%d at %s%n", pkg.getPackageId(), truck.getCurrentTime());
+            System.out.printf("Truck mileage: %.2f miles%n%n", truck.getMileage());
+        }
+    }
+
+    // Sends the truck back to a hub and prints the trace lines for it
+    private static void returnAndTrace(Truck truck, String returnFrom, String hub, double returnDistance,
+            boolean trace) {
         if (trace)
-            System.out.printf("Returning from '%s' to HUB [%.2f miles]%n", returnFrom, returnDistance);
+            System.out.printf("Returning from '%s' to %s [%.2f miles]%n", returnFrom, hub, returnDistance);
 
-        truck.goHome(returnDistance);
+        truck.goToHub(hub, returnDistance);
+        if (traceWriter != null)
+            traceWriter.returnToHub(truck.getTruckId(), returnFrom, hub, returnDistance,
+                    timeToMinutes(truck.getCurrentTime()), truck.getMileage());
 
         if (trace) {
-            System.out.printf("Truck returned to HUB at %s, Total mileage: %.2f miles%n",
-                    truck.getCurrentTime(), truck.getMileage());
+            System.out.printf("Truck returned to %s at %s, Total mileage: %.2f miles%n",
+                    hub, truck.getCurrentTime(), truck.getMileage());
             System.out.println("--------------------------\n");
         }
     }
@@ -356,10 +1002,26 @@ public class App {
      * @param graph distance graph
      * @return nearest package to deliver next
      */
-    private static Package findNearestPackage(Truck truck, DistanceGraph graph) {
+    static Package findNearestPackage(Truck truck, DistanceGraph graph) {
+        return findNearestPackage(truck, graph, graph.indexOf(cleanAddress(truck.getCurrentLocation())));
+    }
+
+    /**
+     * Finds the nearest package to the truck's current location, given as a
+     * graph index so the scan is array reads only.
+     *
+     * @param truck the delivery truck
+     * @param graph distance graph
+     * @param from  graph index of the truck's location, -1 if not in the graph
+     * @return nearest package to deliver next
+     */
+    static Package findNearestPackage(Truck truck, DistanceGraph graph, int from) {
         Package nearestPackage = null;
         double minDistance = Double.MAX_VALUE;
 
+        // Distances from the truck's location by graph index, null if the location is not in the graph
+        double[] row = from >= 0 ? graph.matrix()[from] : null;
+
         for (Package pkg : truck.getLoadedPackages()) {
 
             /*
@@ -377,9 +1039,14 @@ public class App {
              * cleanAddress(truck.getCurrentLocation()),
              * cleanAddress(pkg.getAddress()));
              */
-            double distance = graph.getDistance(
-                    cleanAddress(truck.getCurrentLocation()),
-                    cleanAddress(pkg.getAddress()));
+            // Resolved at load time (see resolvePackageAddresses), anything else goes through the strings
+            double distance = row != null && pkg.getAddressId() >= 0
+                    ? row[pkg.getAddressId()]
+                    : graph.getDistance(cleanAddress(truck.getCurrentLocation()), cleanAddress(pkg.getAddress()));
+            // Same diagnostic getDistance prints, a missing matrix entry is not skipped silently
+            if (distance < 0 && row != null && pkg.getAddressId() >= 0)
+                System.out.println("Distance not found between " + cleanAddress(truck.getCurrentLocation())
+                        + " and " + cleanAddress(pkg.getAddress()));
             if (distance < minDistance && distance >= 0) {
                 minDistance = distance;
                 nearestPackage = pkg;
@@ -444,13 +1111,129 @@ public class App {
         return result;
     }
 
+    /**
+     * Checks the command line before anything runs: every option must be
+     * known and every number in range.
+     *
+     * @param args command line arguments
+     * @return what is wrong with the first bad option, null if all are valid
+     */
+    private static String checkOptions(String[] args) {
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!OPTIONS.contains(equals < 0 ? arg : arg.substring(0, equals)))
+                return "Unknown option " + arg;
+        }
+        String zoneSize = flagValue(args, "--zoned");
+        if (zoneSize != null && !zoneSize.isEmpty() && parsePositiveInt(zoneSize) < 0)
+            return "Invalid --zoned=" + zoneSize + ", expected a zone size above 0";
+        String optimizeMillis = flagValue(args, "--optimize");
+        if (optimizeMillis != null && !optimizeMillis.isEmpty() && parsePositiveInt(optimizeMillis) < 0)
+            return "Invalid --optimize=" + optimizeMillis + ", expected a time budget in milliseconds above 0";
+        String seed = flagValue(args, "--optimize-seed");
+        if (seed != null && !seed.isEmpty() && !seed.matches("-?\\d{1,18}"))
+            return "Invalid --optimize-seed=" + seed + ", expected a whole number";
+        String threads = flagValue(args, "--optimize-threads");
+        if (threads != null && !threads.isEmpty() && parsePositiveInt(threads) < 0)
+            return "Invalid --optimize-threads=" + threads + ", expected a thread count above 0";
+        String live = flagValue(args, "--live");
+        if (live != null && !live.isEmpty() && parsePositive(live) < 0)
+            return "Invalid --live=" + live + ", expected simulated minutes per second above 0";
+        String truckHubs = flagValue(args, "--truck-hub");
+        if (truckHubs != null) {
+            for (String assignment : truckHubs.split(";", -1)) {
+                int colon = assignment.indexOf(':');
+                if (colon < 0 || !assignment.substring(0, colon).trim().matches("[1-3]")
+                        || assignment.substring(colon + 1).isBlank())
+                    return "Invalid --truck-hub=" + truckHubs + ", expected truck:address with truck 1 to 3";
+            }
+        }
+        String whatIf = flagValue(args, "--what-if");
+        if (whatIf != null && parseClockTime(whatIf) < 0)
+            return "Invalid --what-if=" + whatIf + ", expected a departure time HH:MM from 00:00 to 23:59";
+        return null;
+    }
+
+    // Reads a finite number above 0, -1 if the text is not one
+    private static double parsePositive(String value) {
+        try {
+            double number = Double.parseDouble(value);
+            return number > 0 && Double.isFinite(number) ? number : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Reads a whole number above 0, -1 if the text is not one
+    private static int parsePositiveInt(String value) {
+        try {
+            int number = Integer.parseInt(value);
+            return number > 0 ? number : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // True if the command line contains the given flag
+    private static boolean hasFlag(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Finds a flag given as "--flag" or "--flag=value".
+     *
+     * @param args command line arguments
+     * @param flag flag name including the leading dashes
+     * @return the value after '=', "" if the flag has no value, null if absent
+     */
+    private static String flagValue(String[] args, String flag) {
+        for (String arg : args) {
+            if (arg.equals(flag))
+                return "";
+            if (arg.startsWith(flag + "="))
+                return arg.substring(flag.length() + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Converts total minutes to an HH:MM formatted string.
+     *
+     * @param minutes minutes after midnight
+     * @return time string in HH:MM format
+     */
+    static String minutesToTime(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+
+    /**
+     * Reads a 24 hour HH:MM time given on the command line.
+     *
+     * @param time time to read, for example "9:30" or "14:05"
+     * @return minutes after midnight, or -1 if it is not a valid time of day
+     */
+    static int parseClockTime(String time) {
+        if (!time.matches("\\d{1,2}:\\d{2}"))
+            return -1;
+        String[] parts = time.split(":");
+        int hour = Integer.parseInt(parts[0]);
+        int minute = Integer.parseInt(parts[1]);
+        if (hour > 23 || minute > 59)
+            return -1;
+        return hour * 60 + minute;
+    }
+
     /**
      * Converts HH:MM formatted string to total minutes.
      *
      * @param timeStr time string in HH:MM format
      * @return total minutes
      */
-    private static int timeToMinutes(String timeStr) {
+    static int timeToMinutes(String timeStr) {
         if (timeStr.equalsIgnoreCase("EOD"))
             return Integer.MAX_VALUE;
 
@@ -0,0 +1,198 @@
+/**
+ * Loads packages into trucks by count, weight and volume using
+ * first-fit-decreasing with a repair step.
+ *
+ * Packages that must be delivered together (and anything they are grouped
+ * with, transitively) are packed as one unit. Units are sorted by their
+ * largest share of a truck's capacity and placed in the first truck they fit
+ * in. A unit that fits nowhere is then retried after moving one already
+ * placed unit to another truck to make room.
+ *
+ * Deadlines are not considered, this only decides which truck carries what.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public class BinPacker {
+
+    /** Packages that have to ride on the same truck, with their totals. */
+    private static final class Unit {
+        final List<Package> packages = new ArrayList<>();
+        double weight;
+        double volume;
+        double size;
+
+        void add(Package pkg) {
+            packages.add(pkg);
+            weight += pkg.getWeight();
+            volume += pkg.getVolume();
+        }
+    }
+
+    private BinPacker() {
+    }
+
+    /**
+     * Packs packages into trucks and loads them.
+     * Packages already on a truck count against its capacity.
+     *
+     * @param packages packages to load
+     * @param trucks   trucks to fill, earlier trucks are filled first
+     * @return packages that did not fit in any truck
+     */
+    public static List<Package> pack(List<Package> packages, List<Truck> trucks) {
+        List<Unit> units = buildUnits(packages);
+        int bins = trucks.size();
+
+        // Remaining capacity per truck, kept in primitive arrays for the inner loops
+        int[] freeCount = new int[bins];
+        double[] freeWeight = new double[bins];
+        double[] freeVolume = new double[bins];
+        for (int b = 0; b < bins; b++) {
+            Truck truck = trucks.get(b);
+            freeCount[b] = truck.getMaxPackages() - truck.getLoadedPackages().size();
+            freeWeight[b] = truck.getMaxWeight() - truck.getLoadedWeight();
+            freeVolume[b] = truck.getMaxVolume() - truck.getLoadedVolume();
+        }
+
+        // Sort by largest share of the biggest truck, the dimension that binds first
+        int maxCount = 1;
+        double maxWeight = 0.0;
+        double maxVolume = 0.0;
+        for (Truck truck : trucks) {
+            maxCount = Math.max(maxCount, truck.getMaxPackages());
+            maxWeight = Math.max(maxWeight, truck.getMaxWeight());
+            maxVolume = Math.max(maxVolume, truck.getMaxVolume());
+        }
+        for (Unit unit : units) {
+            unit.size = Math.max((double) unit.packages.size() / maxCount,
+                    Math.max(share(unit.weight, maxWeight), share(unit.volume, maxVolume)));
+        }
+        units.sort((a, b) -> Double.compare(b.size, a.size));
+
+        // First fit
+        int[] placedIn = new int[units.size()];
+        Arrays.fill(placedIn, -1);
+        List<Integer> unplaced = new ArrayList<>();
+        for (int u = 0; u < units.size(); u++) {
+            int bin = firstFit(units.get(u), freeCount, freeWeight, freeVolume, -1);
+            if (bin < 0) {
+                unplaced.add(u);
+                continue;
+            }
+            place(units.get(u), bin, freeCount, freeWeight, freeVolume, 1);
+            placedIn[u] = bin;
+        }
+
+        // Repair: move one placed unit to another truck if that frees enough room
+        List<Package> leftOver = new ArrayList<>();
+        for (int u : unplaced) {
+            Unit unit = units.get(u);
+            if (!repair(unit, u, units, placedIn, freeCount, freeWeight, freeVolume))
+                leftOver.addAll(unit.packages);
+        }
+
+        for (int u = 0; u < units.size(); u++) {
+            if (placedIn[u] < 0)
+                continue;
+            for (Package pkg : units.get(u).packages)
+                trucks.get(placedIn[u]).loadPackage(pkg);
+        }
+        return leftOver;
+    }
+
+    // Groups packages with everything they must be delivered with (union-find over package IDs)
+    private static List<Unit> buildUnits(List<Package> packages) {
+        HashMap<Integer, Integer> indexById = new HashMap<>();
+        for (int i = 0; i < packages.size(); i++)
+            indexById.put(packages.get(i).getPackageId(), i);
+
+        int[] parent = new int[packages.size()];
+        for (int i = 0; i < parent.length; i++)
+            parent[i] = i;
+        for (int i = 0; i < packages.size(); i++) {
+            for (int groupId : packages.get(i).getGroupWith()) {
+                Integer j = indexById.get(groupId);
+                if (j != null)
+                    parent[find(parent, i)] = find(parent, j);
+            }
+        }
+
+        HashMap<Integer, Unit> byRoot = new HashMap<>();
+        List<Unit> units = new ArrayList<>();
+        for (int i = 0; i < packages.size(); i++) {
+            Unit unit = byRoot.get(find(parent, i));
+            if (unit == null) {
+                unit = new Unit();
+                byRoot.put(find(parent, i), unit);
+                units.add(unit);
+            }
+            unit.add(packages.get(i));
+        }
+        return units;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static double share(double amount, double capacity) {
+        if (capacity <= 0 || Double.isInfinite(capacity))
+            return 0.0;
+        return amount / capacity;
+    }
+
+    private static boolean fits(Unit unit, int bin, int[] freeCount, double[] freeWeight, double[] freeVolume) {
+        return unit.packages.size() <= freeCount[bin]
+                && unit.weight <= freeWeight[bin]
+                && unit.volume <= freeVolume[bin];
+    }
+
+    // First truck the unit fits in, skipping one truck, -1 if none
+    private static int firstFit(Unit unit, int[] freeCount, double[] freeWeight, double[] freeVolume, int skip) {
+        for (int b = 0; b < freeCount.length; b++) {
+            if (b != skip && fits(unit, b, freeCount, freeWeight, freeVolume))
+                return b;
+        }
+        return -1;
+    }
+
+    // Adds (sign 1) or removes (sign -1) a unit from a truck's free capacity
+    private static void place(Unit unit, int bin, int[] freeCount, double[] freeWeight, double[] freeVolume,
+            int sign) {
+        freeCount[bin] -= sign * unit.packages.size();
+        freeWeight[bin] -= sign * unit.weight;
+        freeVolume[bin] -= sign * unit.volume;
+    }
+
+    // Tries to place an unplaced unit by relocating one placed unit out of the way
+    private static boolean repair(Unit unit, int u, List<Unit> units, int[] placedIn, int[] freeCount,
+            double[] freeWeight, double[] freeVolume) {
+        for (int v = 0; v < units.size(); v++) {
+            int from = placedIn[v];
+            if (from < 0)
+                continue;
+            Unit moved = units.get(v);
+
+            place(moved, from, freeCount, freeWeight, freeVolume, -1);
+            if (fits(unit, from, freeCount, freeWeight, freeVolume)) {
+                int to = firstFit(moved, freeCount, freeWeight, freeVolume, from);
+                if (to >= 0) {
+                    place(moved, to, freeCount, freeWeight, freeVolume, 1);
+                    place(unit, from, freeCount, freeWeight, freeVolume, 1);
+                    placedIn[v] = to;
+                    placedIn[u] = from;
+                    return true;
+                }
+            }
+            place(moved, from, freeCount, freeWeight, freeVolume, 1);
+        }
+        return false;
+    }
+}
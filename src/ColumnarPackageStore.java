@@ -0,0 +1,444 @@
+/**
+ * Column oriented (struct of arrays) storage for large package batches.
+ * Every package field lives in a parallel primitive array indexed by the
+ * package's slot, and repeated strings (address, city, state, zip, status)
+ * are interned into small dictionaries and stored as int/byte codes.
+ * Special notes and delivery groups are sparse, most packages have neither,
+ * so they are only stored for the packages that do.
+ *
+ * Existing code keeps working through {@link PackageView}, a flyweight
+ * Package that reads and writes the columns of one slot. A view only holds
+ * the store and its slot (Package has no fields of its own), it is made the
+ * first time a slot is looked up and handed out again after that, so it can
+ * be loaded on a Truck like a normal Package.
+ *
+ * Package IDs are expected to be small and dense (1..n), they index
+ * straight into an id to slot table.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public class ColumnarPackageStore {
+
+    /** Deadline minute stored for "EOD" packages. */
+    public static final int EOD = Integer.MAX_VALUE;
+
+    /** Delivery minute stored for packages that are not delivered yet ("N/A"). */
+    public static final int NOT_DELIVERED = -1;
+
+    /**
+     * Interns strings to dense int codes so each distinct value is stored once.
+     */
+    public static final class Dictionary {
+        private final HashMap<String, Integer> codes = new HashMap<>();
+        private final ArrayList<String> values = new ArrayList<>();
+
+        /**
+         * @param value string to intern
+         * @return code of the value, assigned on first use
+         */
+        public int intern(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        /**
+         * @param value string to look up
+         * @return code of the value, or -1 if it was never interned
+         */
+        public int codeOf(String value) {
+            Integer code = codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        /** @return string stored under code */
+        public String valueOf(int code) {
+            return values.get(code);
+        }
+
+        /** @return number of distinct values */
+        public int size() {
+            return values.size();
+        }
+    }
+
+    // Columns, slot i describes one package
+    private int[] ids;
+    private int[] locationIds;
+    private int[] cityIds;
+    private int[] stateIds;
+    private int[] zipIds;
+    private int[] deadlineMinutes;
+    private double[] weights;
+    private double[] volumes;
+    private byte[] statuses;
+    private int[] deliveryMinutes;
+
+    /** View of each slot, made on first lookup. */
+    private PackageView[] views;
+
+    /** Number of slots in use. */
+    private int size;
+
+    /** Package ID to slot + 1, 0 means no package with that ID. */
+    private int[] slotById;
+
+    // Dictionaries for repeated strings, location IDs index into addresses
+    private final Dictionary addresses = new Dictionary();
+    private final Dictionary cities = new Dictionary();
+    private final Dictionary states = new Dictionary();
+    private final Dictionary zips = new Dictionary();
+    private final Dictionary statusNames = new Dictionary();
+
+    /** DistanceGraph index by location ID, -1 or past the end if not resolved. */
+    private int[] addressIdByLocation = new int[0];
+
+    // Sparse columns, keyed by slot
+    private final HashMap<Integer, String> specialNotes = new HashMap<>();
+    private final HashMap<Integer, int[]> groups = new HashMap<>();
+
+    /**
+     * Constructs an empty store.
+     *
+     * @param expectedPackages initial number of slots to allocate
+     */
+    public ColumnarPackageStore(int expectedPackages) {
+        int capacity = Math.max(16, expectedPackages);
+        ids = new int[capacity];
+        locationIds = new int[capacity];
+        cityIds = new int[capacity];
+        stateIds = new int[capacity];
+        zipIds = new int[capacity];
+        deadlineMinutes = new int[capacity];
+        weights = new double[capacity];
+        volumes = new double[capacity];
+        statuses = new byte[capacity];
+        deliveryMinutes = new int[capacity];
+        views = new PackageView[capacity];
+        slotById = new int[capacity + 1];
+
+        // Same statuses the rest of the system uses, in a fixed order
+        statusNames.intern("At hub");
+        statusNames.intern("En route");
+        statusNames.intern("Delivered");
+    }
+
+    /**
+     * Adds a package, parsing the same values the Package constructor takes.
+     *
+     * @param packageId   unique identifier for the package, must be positive
+     * @param address     street address for delivery
+     * @param city        city name
+     * @param state       state abbreviation
+     * @param zip         zip code
+     * @param deadline    delivery deadline ("EOD" or a time like "10:30 AM")
+     * @param weight      package weight
+     * @param specialNote special instructions or constraints
+     * @return slot the package was stored in
+     */
+    public int addPackage(int packageId, String address, String city, String state,
+            String zip, String deadline, double weight, String specialNote) {
+        if (packageId <= 0)
+            throw new IllegalArgumentException("Package ID must be positive: " + packageId);
+        if (size == ids.length)
+            grow(size * 2);
+        if (packageId >= slotById.length)
+            slotById = Arrays.copyOf(slotById, Math.max(packageId + 1, slotById.length * 2));
+
+        int slot = size++;
+        ids[slot] = packageId;
+        locationIds[slot] = addresses.intern(address);
+        cityIds[slot] = cities.intern(city);
+        stateIds[slot] = states.intern(state);
+        zipIds[slot] = zips.intern(zip);
+        deadlineMinutes[slot] = App.timeToMinutes(deadline);
+        weights[slot] = weight;
+        statuses[slot] = 0; // "At hub"
+        deliveryMinutes[slot] = NOT_DELIVERED;
+        slotById[packageId] = slot + 1;
+
+        if (!specialNote.isEmpty()) {
+            specialNotes.put(slot, specialNote);
+            List<Integer> groupWith = Package.parseGroupWith(specialNote);
+            if (!groupWith.isEmpty())
+                groups.put(slot, groupWith.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return slot;
+    }
+
+    // Resizes every column to the new capacity
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        locationIds = Arrays.copyOf(locationIds, capacity);
+        cityIds = Arrays.copyOf(cityIds, capacity);
+        stateIds = Arrays.copyOf(stateIds, capacity);
+        zipIds = Arrays.copyOf(zipIds, capacity);
+        deadlineMinutes = Arrays.copyOf(deadlineMinutes, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+        volumes = Arrays.copyOf(volumes, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        deliveryMinutes = Arrays.copyOf(deliveryMinutes, capacity);
+        views = Arrays.copyOf(views, capacity);
+    }
+
+    /**
+     * @param packageId unique identifier of the package
+     * @return slot of the package, or -1 if not stored
+     */
+    public int slotOf(int packageId) {
+        if (packageId <= 0 || packageId >= slotById.length)
+            return -1;
+        return slotById[packageId] - 1;
+    }
+
+    /**
+     * Returns the flyweight view of a slot, made on first use.
+     * Two threads looking up a new slot at once may each make a view, they
+     * compare equal so either one is fine to keep.
+     *
+     * @param slot slot returned by addPackage or slotOf
+     * @return Package backed by this store
+     */
+    public PackageView view(int slot) {
+        if (slot < 0 || slot >= size)
+            throw new IndexOutOfBoundsException("Slot " + slot + " of " + size);
+        PackageView view = views[slot];
+        if (view == null) {
+            view = new PackageView(this, slot);
+            views[slot] = view;
+        }
+        return view;
+    }
+
+    /**
+     * @param packageId unique identifier of the package
+     * @return view of the package, or null if not stored
+     */
+    public PackageView getPackage(int packageId) {
+        int slot = slotOf(packageId);
+        return slot < 0 ? null : view(slot);
+    }
+
+    /** @return number of packages stored */
+    public int size() {
+        return size;
+    }
+
+    // Column accessors, for batch code that wants to skip the views
+
+    /** @return package ID stored in slot */
+    public int getId(int slot) {
+        return ids[slot];
+    }
+
+    /** @return location ID of the slot's address, see getAddresses() */
+    public int getLocationId(int slot) {
+        return locationIds[slot];
+    }
+
+    /** @return deadline in minutes after midnight, EOD for end of day */
+    public int getDeadlineMinute(int slot) {
+        return deadlineMinutes[slot];
+    }
+
+    /** @return weight stored in slot */
+    public double getWeight(int slot) {
+        return weights[slot];
+    }
+
+    /** @return status code of slot, see getStatusNames() */
+    public byte getStatusCode(int slot) {
+        return statuses[slot];
+    }
+
+    /** @return delivery minute of slot, NOT_DELIVERED if not delivered */
+    public int getDeliveryMinute(int slot) {
+        return deliveryMinutes[slot];
+    }
+
+    /**
+     * Marks a slot delivered without going through a view.
+     *
+     * @param slot   slot to update
+     * @param minute delivery time in minutes after midnight
+     */
+    public void markDelivered(int slot, int minute) {
+        statuses[slot] = 2; // "Delivered"
+        deliveryMinutes[slot] = minute;
+    }
+
+    /** @return dictionary of delivery addresses, indexed by location ID */
+    public Dictionary getAddresses() {
+        return addresses;
+    }
+
+    /** @return dictionary of status names, indexed by status code */
+    public Dictionary getStatusNames() {
+        return statusNames;
+    }
+
+    // Formats minutes after midnight back to the package file's "10:30 AM" style
+    private static String formatDeadline(int minutes) {
+        if (minutes == EOD)
+            return "EOD";
+        int hour = minutes / 60;
+        int minute = minutes % 60;
+        String period = hour < 12 ? "AM" : "PM";
+        int displayHour = hour % 12 == 0 ? 12 : hour % 12;
+        return String.format("%d:%02d %s", displayHour, minute, period);
+    }
+
+    /**
+     * Flyweight Package reading and writing one slot of a ColumnarPackageStore.
+     * Two views are equal if they point at the same slot of the same store.
+     */
+    public static final class PackageView extends Package {
+        private final ColumnarPackageStore store;
+        private final int slot;
+
+        private PackageView(ColumnarPackageStore store, int slot) {
+            this.store = store;
+            this.slot = slot;
+        }
+
+        /** @return slot this view points at */
+        public int getSlot() {
+            return slot;
+        }
+
+        @Override
+        public int getPackageId() {
+            return store.ids[slot];
+        }
+
+        @Override
+        public String getAddress() {
+            return store.addresses.valueOf(store.locationIds[slot]);
+        }
+
+        @Override
+        public int getAddressId() {
+            int location = store.locationIds[slot];
+            return location < store.addressIdByLocation.length ? store.addressIdByLocation[location] : -1;
+        }
+
+        // Resolved per distinct address, so every package going there shares it
+        @Override
+        public void setAddressId(int addressId) {
+            int location = store.locationIds[slot];
+            if (location >= store.addressIdByLocation.length) {
+                int old = store.addressIdByLocation.length;
+                store.addressIdByLocation = Arrays.copyOf(store.addressIdByLocation,
+                        Math.max(location + 1, store.addresses.size()));
+                Arrays.fill(store.addressIdByLocation, old, store.addressIdByLocation.length, -1);
+            }
+            store.addressIdByLocation[location] = addressId;
+        }
+
+        @Override
+        public String getCity() {
+            return store.cities.valueOf(store.cityIds[slot]);
+        }
+
+        @Override
+        public String getState() {
+            return store.states.valueOf(store.stateIds[slot]);
+        }
+
+        @Override
+        public String getZip() {
+            return store.zips.valueOf(store.zipIds[slot]);
+        }
+
+        @Override
+        public String getDeadline() {
+            return formatDeadline(store.deadlineMinutes[slot]);
+        }
+
+        @Override
+        public double getWeight() {
+            return store.weights[slot];
+        }
+
+        @Override
+        public double getVolume() {
+            return store.volumes[slot];
+        }
+
+        @Override
+        public void setVolume(double volume) {
+            store.volumes[slot] = volume;
+        }
+
+        @Override
+        public String getStatus() {
+            return store.statusNames.valueOf(store.statuses[slot]);
+        }
+
+        @Override
+        public String getDeliveryTime() {
+            int minutes = store.deliveryMinutes[slot];
+            if (minutes == NOT_DELIVERED)
+                return "N/A";
+            return String.format("%02d:%02d", minutes / 60, minutes % 60);
+        }
+
+        @Override
+        public String getSpecialNote() {
+            return store.specialNotes.getOrDefault(slot, "");
+        }
+
+        @Override
+        public List<Integer> getGroupWith() {
+            int[] group = store.groups.get(slot);
+            if (group == null)
+                return List.of();
+            List<Integer> result = new ArrayList<>(group.length);
+            for (int id : group)
+                result.add(id);
+            return result;
+        }
+
+        @Override
+        public void setAddress(String address) {
+            store.locationIds[slot] = store.addresses.intern(address);
+        }
+
+        @Override
+        public void setStatus(String status) {
+            int code = store.statusNames.intern(status);
+            if (code > Byte.MAX_VALUE)
+                throw new IllegalStateException("Too many distinct statuses: " + status);
+            store.statuses[slot] = (byte) code;
+        }
+
+        @Override
+        public void setDeliveryTime(String deliveryTime) {
+            store.deliveryMinutes[slot] = "N/A".equals(deliveryTime)
+                    ? NOT_DELIVERED
+                    : App.timeToMinutes(deliveryTime);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof PackageView))
+                return false;
+            PackageView other = (PackageView) o;
+            return store == other.store && slot == other.slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(store) + slot;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Delivery time statistics for the end of day SLA report.
+ * Packages and trucks are fed in one at a time and only running totals and a
+ * QuantileSketch are kept, so memory stays the same however many deliveries
+ * go through it. Results are written as JSON.
+ *
+ * Lateness is minutes delivered after the deadline, 0 for packages on time.
+ * EOD packages count against the end of day given to the constructor.
+ * Driving time is mileage over Truck.SPEED_MPH since loading is instantaneous,
+ * and idle driver time is whatever the drivers' shifts (day start to the last
+ * truck back) did not spend driving.
+ */
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+public class DeliveryStats {
+
+    /** Lateness percentiles reported, as quantiles. */
+    private static final double[] PERCENTILES = { 0.50, 0.90, 0.95, 0.99 };
+
+    private final int drivers;
+    private final int dayStartMinute;
+    private final int endOfDayMinute;
+
+    /** Lateness in minutes of every delivered package. */
+    private final QuantileSketch lateness = new QuantileSketch(0.01, 2048);
+
+    private long delivered;
+    private long onTime;
+    private long undelivered;
+    private double totalMinutesLate;
+
+    private int trucks;
+    private double miles;
+    private double drivingMinutes;
+    private int lastReturnMinute;
+
+    /**
+     * Constructs empty statistics.
+     *
+     * @param drivers        number of drivers working the day
+     * @param dayStartMinute minute the drivers start, e.g. 480 for 08:00
+     * @param endOfDayMinute deadline used for EOD packages, e.g. 1020 for 17:00
+     */
+    public DeliveryStats(int drivers, int dayStartMinute, int endOfDayMinute) {
+        this.drivers = drivers;
+        this.dayStartMinute = dayStartMinute;
+        this.endOfDayMinute = endOfDayMinute;
+        this.lastReturnMinute = dayStartMinute;
+    }
+
+    /**
+     * Adds a package, delivered or not.
+     *
+     * @param pkg package to count
+     */
+    public void addPackage(Package pkg) {
+        if (!pkg.getStatus().equals("Delivered")) {
+            undelivered++;
+            return;
+        }
+        int deadline = pkg.getDeadline().equalsIgnoreCase("EOD")
+                ? endOfDayMinute
+                : App.timeToMinutes(pkg.getDeadline());
+        addDelivery(deadline, App.timeToMinutes(pkg.getDeliveryTime()));
+    }
+
+    /**
+     * Adds one delivery.
+     *
+     * @param deadlineMinute  deadline in minutes after midnight
+     * @param deliveredMinute delivery time in minutes after midnight
+     */
+    public void addDelivery(int deadlineMinute, int deliveredMinute) {
+        int late = Math.max(0, deliveredMinute - deadlineMinute);
+        delivered++;
+        if (late == 0)
+            onTime++;
+        totalMinutesLate += late;
+        lateness.add(late);
+    }
+
+    /**
+     * Adds a truck that finished its day back at the HUB.
+     *
+     * @param truck truck to count
+     */
+    public void addTruck(Truck truck) {
+        addTruck(truck.getMileage(), App.timeToMinutes(truck.getCurrentTime()));
+    }
+
+    /**
+     * Adds one truck's day.
+     *
+     * @param truckMiles   miles the truck drove
+     * @param returnMinute minute the truck got back, in minutes after midnight
+     */
+    public void addTruck(double truckMiles, int returnMinute) {
+        trucks++;
+        miles += truckMiles;
+        drivingMinutes += truckMiles / Truck.SPEED_MPH * 60;
+        lastReturnMinute = Math.max(lastReturnMinute, returnMinute);
+    }
+
+    /** @return share of delivered packages that made their deadline, NaN if none */
+    public double getOnTimeRate() {
+        return delivered == 0 ? Double.NaN : (double) onTime / delivered;
+    }
+
+    /**
+     * @param q quantile between 0 and 1
+     * @return estimated minutes late at that quantile, NaN if nothing was delivered
+     */
+    public double getLateness(double q) {
+        return lateness.quantile(q);
+    }
+
+    /** @return packages delivered per hour of truck driving, NaN if no truck drove */
+    public double getDeliveriesPerTruckHour() {
+        return drivingMinutes == 0 ? Double.NaN : delivered / (drivingMinutes / 60);
+    }
+
+    /** @return driver minutes between day start and the last return spent not driving */
+    public double getIdleDriverMinutes() {
+        return Math.max(0.0, (double) drivers * (lastReturnMinute - dayStartMinute) - drivingMinutes);
+    }
+
+    /** @return miles driven per delivered package, NaN if nothing was delivered */
+    public double getMilesPerPackage() {
+        return delivered == 0 ? Double.NaN : miles / delivered;
+    }
+
+    /**
+     * Writes the statistics as a JSON object.
+     *
+     * @param path file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void writeJson(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path)) {
+            out.write(toJson());
+        }
+    }
+
+    /** @return the statistics as a JSON object */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n");
+        json.append("  \"packages\": {\n");
+        json.append("    \"delivered\": ").append(delivered).append(",\n");
+        json.append("    \"onTime\": ").append(onTime).append(",\n");
+        json.append("    \"late\": ").append(delivered - onTime).append(",\n");
+        json.append("    \"undelivered\": ").append(undelivered).append(",\n");
+        json.append("    \"onTimeRate\": ").append(number(getOnTimeRate())).append("\n");
+        json.append("  },\n");
+
+        json.append("  \"latenessMinutes\": {\n");
+        json.append("    \"mean\": ").append(number(delivered == 0 ? Double.NaN : totalMinutesLate / delivered))
+                .append(",\n");
+        for (double q : PERCENTILES) {
+            json.append("    \"p").append(Math.round(q * 100)).append("\": ")
+                    .append(number(lateness.quantile(q))).append(",\n");
+        }
+        json.append("    \"max\": ").append(number(lateness.getMax())).append("\n");
+        json.append("  },\n");
+
+        json.append("  \"fleet\": {\n");
+        json.append("    \"trucks\": ").append(trucks).append(",\n");
+        json.append("    \"drivers\": ").append(drivers).append(",\n");
+        json.append("    \"miles\": ").append(number(miles)).append(",\n");
+        json.append("    \"drivingMinutes\": ").append(number(drivingMinutes)).append(",\n");
+        json.append("    \"lastReturn\": \"").append(App.minutesToTime(lastReturnMinute)).append("\",\n");
+        json.append("    \"deliveriesPerTruckHour\": ").append(number(getDeliveriesPerTruckHour())).append(",\n");
+        json.append("    \"idleDriverMinutes\": ").append(number(getIdleDriverMinutes())).append(",\n");
+        json.append("    \"milesPerPackage\": ").append(number(getMilesPerPackage())).append("\n");
+        json.append("  }\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    // JSON has no NaN, write null instead
+    private static String number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return "null";
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+}
@@ -4,18 +4,49 @@
  * 
  * @author Taylor Ketterling 3/19/25
  */
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 public class DistanceGraph {
 
-    /** Nested HashMap storing distances between two addresses. */
+    /** Nested HashMap storing distances between two addresses, in insertion order. */
     private final HashMap<String, HashMap<String, Double>> distances;
 
+    /** Dense index of every address, in the order they were first added. */
+    private final HashMap<String, Integer> indexes;
+    private final ArrayList<String> names;
+
+    /** Distances by address index, built on first int-indexed use, -1 where unknown. */
+    private volatile double[][] matrix;
+
+    /** Hub addresses trucks can start from and return to, by depot number. */
+    private final ArrayList<String> depots;
+
+    /** Distances from every address to every depot, built with the matrix. */
+    private static final class DepotVectors {
+        final double[][] toDepot;      // [depot][address index], -1 where unknown
+        final int[] nearest;           // [address index] closest depot, -1 if none reachable
+        final double[] nearestDistance; // [address index] distance to that depot, -1 if none
+
+        DepotVectors(double[][] toDepot, int[] nearest, double[] nearestDistance) {
+            this.toDepot = toDepot;
+            this.nearest = nearest;
+            this.nearestDistance = nearestDistance;
+        }
+    }
+
+    private volatile DepotVectors depotVectors;
+
     /**
      * Constructs an empty DistanceGraph.
      */
     public DistanceGraph() {
-        distances = new HashMap<>();
+        distances = new LinkedHashMap<>();
+        indexes = new HashMap<>();
+        names = new ArrayList<>();
+        depots = new ArrayList<>();
     }
 
     /**
@@ -28,6 +59,183 @@ public class DistanceGraph {
     public void addDistance(String address1, String address2, double distance) {
         distances.computeIfAbsent(address1, k -> new HashMap<>()).put(address2, distance);
         distances.computeIfAbsent(address2, k -> new HashMap<>()).put(address1, distance);
+        indexOrAdd(address1);
+        indexOrAdd(address2);
+        matrix = null; // rebuilt on next int-indexed lookup
+        depotVectors = null;
+    }
+
+    private void indexOrAdd(String address) {
+        if (!indexes.containsKey(address)) {
+            indexes.put(address, names.size());
+            names.add(address);
+        }
+    }
+
+    /**
+     * Index of an address for the int-indexed lookups.
+     *
+     * @param address location's address
+     * @return index of the address, or -1 if it has no distances
+     */
+    public int indexOf(String address) {
+        Integer index = indexes.get(address);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param index address index
+     * @return the address at that index
+     */
+    public String addressOf(int index) {
+        return names.get(index);
+    }
+
+    /** @return number of indexed addresses */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Retrieves the distance between two address indexes, a plain array read
+     * for hot loops. Distances must not be added while this is in use.
+     *
+     * @param index1 First location's index.
+     * @param index2 Second location's index.
+     * @return distance between the locations, or -1 if not found.
+     */
+    public double getDistance(int index1, int index2) {
+        return matrix()[index1][index2];
+    }
+
+    /**
+     * Full distance matrix by address index, shared, do not modify.
+     *
+     * @return matrix of distances, -1 where unknown
+     */
+    public double[][] matrix() {
+        double[][] m = matrix;
+        if (m == null) {
+            synchronized (this) {
+                m = matrix;
+                if (m == null) {
+                    int n = names.size();
+                    m = new double[n][n];
+                    for (int i = 0; i < n; i++) {
+                        HashMap<String, Double> row = distances.get(names.get(i));
+                        for (int j = 0; j < n; j++) {
+                            Double d = row.get(names.get(j));
+                            m[i][j] = d != null ? d : (i == j ? 0 : -1);
+                        }
+                    }
+                    matrix = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Registers an address as a depot (hub) trucks can return to.
+     *
+     * @param address hub address, must already have distances
+     * @return depot number of the hub
+     */
+    public synchronized int addDepot(String address) {
+        int depot = depots.indexOf(address);
+        if (depot >= 0)
+            return depot;
+        if (indexOf(address) < 0)
+            throw new IllegalArgumentException("No distances for depot " + address);
+        depots.add(address);
+        depotVectors = null;
+        return depots.size() - 1;
+    }
+
+    /**
+     * @param address hub address
+     * @return depot number of the address, or -1 if it is not a depot
+     */
+    public int depotOf(String address) {
+        return depots.indexOf(address);
+    }
+
+    /**
+     * @param depot depot number
+     * @return address of the depot
+     */
+    public String getDepot(int depot) {
+        return depots.get(depot);
+    }
+
+    /** @return number of registered depots */
+    public int getDepotCount() {
+        return depots.size();
+    }
+
+    /**
+     * Distance from an address to a depot, a plain array read.
+     *
+     * @param index address index
+     * @param depot depot number
+     * @return distance in miles, or -1 if unknown
+     */
+    public double getDistanceToDepot(int index, int depot) {
+        return depotVectors().toDepot[depot][index];
+    }
+
+    /**
+     * Closest depot to an address, a plain array read.
+     *
+     * @param index address index
+     * @return depot number, or -1 if there are no depots or none has a distance
+     */
+    public int nearestDepot(int index) {
+        return depotVectors().nearest[index];
+    }
+
+    /**
+     * @param index address index
+     * @return distance from the address to its closest depot, or -1 if none
+     */
+    public double getDistanceToNearestDepot(int index) {
+        return depotVectors().nearestDistance[index];
+    }
+
+    // Depot vectors are small (depots x addresses), looked up directly so the full matrix is never needed
+    private DepotVectors depotVectors() {
+        DepotVectors v = depotVectors;
+        if (v == null) {
+            synchronized (this) {
+                v = depotVectors;
+                if (v == null) {
+                    int n = names.size();
+                    double[][] toDepot = new double[depots.size()][n];
+                    for (int d = 0; d < toDepot.length; d++) {
+                        String depot = depots.get(d);
+                        for (int i = 0; i < n; i++)
+                            toDepot[d][i] = depot.equals(names.get(i)) ? 0 : lookupDistance(depot, names.get(i));
+                    }
+
+                    int[] nearest = new int[n];
+                    double[] nearestDistance = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        nearest[i] = -1;
+                        nearestDistance[i] = -1;
+                        for (int d = 0; d < toDepot.length; d++) {
+                            double dist = toDepot[d][i];
+                            if (dist >= 0 && (nearest[i] < 0 || dist < nearestDistance[i])) {
+                                nearest[i] = d;
+                                nearestDistance[i] = dist;
+                            }
+                        }
+                    }
+                    v = new DepotVectors(toDepot, nearest, nearestDistance);
+                    depotVectors = v;
+                }
+            }
+        }
+        return v;
     }
 
     /**
@@ -46,6 +254,30 @@ public class DistanceGraph {
         return -1;
     }
 
+    /**
+     * Retrieves the distance between two addresses without printing when it
+     * is missing, for callers that handle unknown distances themselves.
+     *
+     * @param address1 First location's address.
+     * @param address2 Second location's address.
+     * @return distance between the locations, or -1 if not found.
+     */
+    public double lookupDistance(String address1, String address2) {
+        HashMap<String, Double> row = distances.get(address1);
+        Double distance = row == null ? null : row.get(address2);
+        return distance == null ? -1 : distance;
+    }
+
+    /**
+     * Returns every address that has at least one stored distance, in the
+     * order they were first added (the CSV header order, HUB first).
+     *
+     * @return list of addresses
+     */
+    public List<String> getAddresses() {
+        return new ArrayList<>(distances.keySet());
+    }
+
     /**
      * Prints all the stored distances
      * needed for debugging 
@@ -0,0 +1,161 @@
+/**
+ * Runs the delivery system as a live simulation with one virtual thread
+ * per truck. Every truck is a TruckActor advancing in simulated real time
+ * against a shared SimulationClock and a shared PackageHashTable, and is
+ * controlled by sending it commands.
+ *
+ * Virtual threads park instead of holding a platform thread while a truck
+ * waits for the clock or for its mailbox, so tens of thousands of trucks fit
+ * on one JVM.
+ */
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class LiveSimulation {
+
+    private final PackageHashTable pkgTable;
+    private final DistanceGraph graph;
+    private final SimulationClock clock;
+    private final TraceWriter traceWriter;
+
+    /** Actors by truck number, in the order they were added. */
+    private final Map<Integer, TruckActor> actors = new LinkedHashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    /** Truck numbers, in the order trucks got back to the HUB. */
+    private final BlockingQueue<Integer> returns = new LinkedBlockingQueue<>();
+
+    /**
+     * Constructs a simulation with no trucks.
+     *
+     * @param pkgTable    shared package table
+     * @param graph       distance graph, must not change once trucks start
+     * @param clock       simulated clock
+     * @param traceWriter trace to record deliveries to, or null
+     */
+    public LiveSimulation(PackageHashTable pkgTable, DistanceGraph graph, SimulationClock clock,
+            TraceWriter traceWriter) {
+        this.pkgTable = pkgTable;
+        this.graph = graph;
+        this.clock = clock;
+        this.traceWriter = traceWriter;
+    }
+
+    /**
+     * Adds a truck and starts its virtual thread. The truck is idle at the
+     * HUB until it is dispatched.
+     *
+     * @param truck truck to run, owned by the simulation from now on
+     */
+    public synchronized void addTruck(Truck truck) {
+        if (actors.containsKey(truck.getTruckId()))
+            throw new IllegalArgumentException("Truck " + truck.getTruckId() + " already added");
+        TruckActor actor = new TruckActor(truck, pkgTable, graph, clock, traceWriter, returns::add);
+        actors.put(truck.getTruckId(), actor);
+        threads.add(Thread.ofVirtual().name("truck-" + truck.getTruckId()).start(actor));
+    }
+
+    /**
+     * Loads packages onto a truck, an idle truck leaves at the given time.
+     *
+     * @param truckId         truck number
+     * @param packages        packages to deliver
+     * @param departureMinute simulated minute an idle truck leaves, its own time if later
+     */
+    public void dispatch(int truckId, List<Package> packages, int departureMinute) {
+        actor(truckId).send(new TruckActor.Dispatch(packages, departureMinute));
+    }
+
+    /**
+     * Changes a truck's remaining route from its next stop on.
+     *
+     * @param truckId      truck number
+     * @param packageOrder package IDs to deliver next, in order
+     */
+    public void reroute(int truckId, List<Integer> packageOrder) {
+        actor(truckId).send(new TruckActor.Reroute(packageOrder));
+    }
+
+    /**
+     * Blocks until the first of some trucks is back at its home hub in
+     * simulated time, counting minutes each one still needs after that (a
+     * drive over to another hub). Actors report a return when their thread
+     * gets there, which is out of simulated order once they fall behind the
+     * clock, so a return is only taken once every other truck is known to be
+     * done no earlier.
+     *
+     * @param afterReturn minutes each truck to wait for needs after its return, each must be out on a route
+     * @return number of the truck done first, see getReturnMinute for when it got back
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public int awaitFirstReturn(Map<Integer, Double> afterReturn) throws InterruptedException {
+        List<Integer> returned = new ArrayList<>();
+        int first = -1;
+        double firstDone = Double.MAX_VALUE;
+        Integer truckId = returns.take();
+        while (true) {
+            if (truckId != null && afterReturn.containsKey(truckId)) {
+                returned.add(truckId);
+                double done = getReturnMinute(truckId) + afterReturn.get(truckId);
+                if (done < firstDone) {
+                    first = truckId;
+                    firstDone = done;
+                }
+            }
+            boolean settled = first >= 0;
+            for (Map.Entry<Integer, Double> other : afterReturn.entrySet()) {
+                if (settled && !returned.contains(other.getKey())
+                        && actor(other.getKey()).getBusyUntil() + other.getValue() < firstDone)
+                    settled = false;
+            }
+            // A truck reads as idle only after queueing its return, so look again before deciding
+            truckId = settled ? returns.poll() : returns.poll(10, TimeUnit.MILLISECONDS);
+            if (settled && truckId == null)
+                return first;
+        }
+    }
+
+    /**
+     * @param truckId truck number
+     * @return simulated minute the truck last got back to its home hub, -1 if it has not
+     */
+    public double getReturnMinute(int truckId) {
+        return actor(truckId).getReturnMinute();
+    }
+
+    /**
+     * Tells every truck to stop once its route is done and waits for them.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void shutdown() throws InterruptedException {
+        List<Thread> running;
+        synchronized (this) {
+            for (TruckActor actor : actors.values())
+                actor.send(new TruckActor.Shutdown());
+            running = new ArrayList<>(threads);
+        }
+        for (Thread thread : running)
+            thread.join();
+    }
+
+    /**
+     * @param truckId truck number
+     * @return the truck, only safe to read after shutdown
+     */
+    public Truck getTruck(int truckId) {
+        return actor(truckId).getTruck();
+    }
+
+    private synchronized TruckActor actor(int truckId) {
+        TruckActor actor = actors.get(truckId);
+        if (actor == null)
+            throw new IllegalArgumentException("No truck " + truckId);
+        return actor;
+    }
+}
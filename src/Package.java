@@ -3,72 +3,20 @@ import java.util.List;
 
 /**
  * Package object for managing package delivery within the WGUPS network
+ * Holds no data itself: StandalonePackage keeps it in fields, and
+ * ColumnarPackageStore.PackageView reads it from the store's columns.
  *
  * @author Taylor Ketterling 3/19/25
  */
-public class Package {
-    // Variables
-    /** Unique ID assigned to the package. */
-    private int packageId;
-
-    /** Street address for package delivery. */
-    private String address;
-
-    /** City for package delivery. */
-    private String city;
-
-    /** State abbreviation for delivery location. */
-    private String state;
-
-    /** Zip code for delivery location. */
-    private String zip;
-
-    /** Delivery deadline (e.g., "EOD", "10:30 AM"). */
-    private String deadline;
-
-    /** Weight of the package in kilograms. */
-    private double weight;
-
-    /** Current status of the package ("At hub", "En route", "Delivered"). */
-    private String status;
-
-    /** Recorded time when package was delivered (formatted as HH:MM). */
-    private String deliveryTime;
-
-    /** Special notes or constraints associated with this package. */
-    private String specialNote;
-
-    /** If the package is grouped with other packages */
-    private List<Integer> groupWith = new ArrayList<>();
-
-    // Constructor
+public abstract class Package {
     /**
-     * Constructs a new Package with given delivery details.
-     * packageId must be unique, system does not set unique ID, but receives a
-     * unique ID
+     * Reads the package IDs out of a "Must be delivered with" special note.
      *
-     * @param packageId   unique identifier for the package
-     * @param address     street address for delivery
-     * @param city        city name
-     * @param state       state abbreviation
-     * @param zip         zip code
-     * @param deadline    delivery deadline
-     * @param weight      package weight
      * @param specialNote special instructions or constraints
+     * @return IDs the package must be delivered with, empty if none
      */
-    public Package(int packageId, String address, String city, String state,
-            String zip, String deadline, double weight, String specialNote) {
-        this.packageId = packageId;
-        this.address = address;
-        this.city = city;
-        this.state = state;
-        this.zip = zip;
-        this.deadline = deadline;
-        this.weight = weight;
-        this.status = "At hub";
-        this.deliveryTime = "N/A";
-        this.specialNote = specialNote;
-
+    static List<Integer> parseGroupWith(String specialNote) {
+        List<Integer> groupWith = new ArrayList<>();
         if (specialNote.contains("Must be delivered with")) {
             String[] parts = specialNote.split("with");
             if (parts.length > 1) {
@@ -81,63 +29,48 @@ public class Package {
                 }
             }
         }
+        return groupWith;
     }
 
     // Getters
     /** @return unique package ID */
-    public int getPackageId() {
-        return packageId;
-    }
+    public abstract int getPackageId();
 
     /** @return street address of the package */
-    public String getAddress() {
-        return address;
-    }
+    public abstract String getAddress();
+
+    /** @return DistanceGraph index of the address, -1 if not resolved */
+    public abstract int getAddressId();
 
     /** @return city for delivery */
-    public String getCity() {
-        return city;
-    }
+    public abstract String getCity();
 
     /** @return state abbreviation for delivery */
-    public String getState() {
-        return state;
-    }
+    public abstract String getState();
 
     /** @return zip code for delivery */
-    public String getZip() {
-        return zip;
-    }
+    public abstract String getZip();
 
     /** @return deeadline of delivery */
-    public String getDeadline() {
-        return deadline;
-    }
+    public abstract String getDeadline();
 
     /** @return weight of package */
-    public double getWeight() {
-        return weight;
-    }
+    public abstract double getWeight();
+
+    /** @return volume of package, 0 if unknown */
+    public abstract double getVolume();
 
     /** @return current package status */
-    public String getStatus() {
-        return status;
-    }
+    public abstract String getStatus();
 
     /** @return time when the package was delivered */
-    public String getDeliveryTime() {
-        return deliveryTime;
-    }
+    public abstract String getDeliveryTime();
 
     /** @return special notes or constraints for the package */
-    public String getSpecialNote() {
-        return specialNote;
-    }
+    public abstract String getSpecialNote();
 
     /** @return package group */
-    public List<Integer> getGroupWith() {
-        return groupWith;
-    }
+    public abstract List<Integer> getGroupWith();
 
     // Setters
     /**
@@ -145,27 +78,35 @@ public class Package {
      * 
      * @param address new address for delivery
      */
-    public void setAddress(String address) {
-        this.address = address;
-    }
+    public abstract void setAddress(String address);
+
+    /**
+     * Sets the DistanceGraph index of the address, see AddressIndex.
+     * 
+     * @param addressId graph index of the address, -1 if not resolved
+     */
+    public abstract void setAddressId(int addressId);
+
+    /**
+     * Sets/updates the volume, the package file only has weights.
+     * 
+     * @param volume volume of the package
+     */
+    public abstract void setVolume(double volume);
 
     /**
      * Sets/updates the package status.
      * 
      * @param status current status ("At hub", "En route", "Delivered")
      */
-    public void setStatus(String status) {
-        this.status = status;
-    }
+    public abstract void setStatus(String status);
 
     /**
      * Sets/updates the delivery time.
      * 
      * @param deliveryTime the exact time the package was delivered
      */
-    public void setDeliveryTime(String deliveryTime) {
-        this.deliveryTime = deliveryTime;
-    }
+    public abstract void setDeliveryTime(String deliveryTime);
 
     /**
      * Provides a readable representation of the Package Object for printing
@@ -174,6 +115,7 @@ public class Package {
      */
     @Override
     public String toString() {
-        return "Package #" + packageId + " to " + address + ", Status: " + status + ", Delivered at: " + deliveryTime;
+        return "Package #" + getPackageId() + " to " + getAddress() + ", Status: " + getStatus()
+                + ", Delivered at: " + getDeliveryTime();
     }
 }
@@ -1,22 +1,67 @@
 
 /**
  * A hash table to store Package objects
- * uses a java HashMap to look up items and quickly update.
+ * uses a java ConcurrentHashMap to look up items and quickly update, so
+ * trucks running on their own threads (LiveSimulation) can share one table.
+ * Can also sit on top of a ColumnarPackageStore, then package data lives in
+ * the store's columns and lookups return the store's view of each package.
  *
  * @author Taylor Ketterling 3/19/25
  */
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class PackageHashTable {
 
     /** Internal hash map storing packages by their unique package ID. */
-    private HashMap<Integer, Package> packages;
+    private ConcurrentHashMap<Integer, Package> packages;
+
+    /** IDs of packages updated since the last drainChanges, used by SimulationSnapshot. */
+    private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+
+    /** Columnar store holding the packages instead of the map, null if not used. */
+    private final ColumnarPackageStore store;
 
     /**
      * Constructs an empty PackageHashTable.
      */
     public PackageHashTable() {
-        packages = new HashMap<>();
+        packages = new ConcurrentHashMap<>();
+        store = null;
+    }
+
+    /**
+     * Constructs a PackageHashTable backed by a columnar store.
+     *
+     * @param store store holding the packages, added packages are copied into it
+     */
+    public PackageHashTable(ColumnarPackageStore store) {
+        packages = new ConcurrentHashMap<>();
+        this.store = store;
+    }
+
+    /**
+     * Adds a package from its file values, straight into the columns when
+     * backed by a store.
+     *
+     * @param packageId   unique identifier for the package
+     * @param address     street address for delivery
+     * @param city        city name
+     * @param state       state abbreviation
+     * @param zip         zip code
+     * @param deadline    delivery deadline
+     * @param weight      package weight
+     * @param specialNote special instructions or constraints
+     */
+    public void addPackage(int packageId, String address, String city, String state,
+            String zip, String deadline, double weight, String specialNote) {
+        if (store == null)
+            packages.put(packageId, new StandalonePackage(packageId, address, city, state, zip, deadline, weight,
+                    specialNote));
+        else
+            store.addPackage(packageId, address, city, state, zip, deadline, weight, specialNote);
     }
 
     /**
@@ -25,7 +70,16 @@ public class PackageHashTable {
      * @param pkg the Package object to be added
      */
     public void addPackage(Package pkg) {
-        packages.put(pkg.getPackageId(), pkg);
+        if (store == null) {
+            packages.put(pkg.getPackageId(), pkg);
+            return;
+        }
+        int slot = store.addPackage(pkg.getPackageId(), pkg.getAddress(), pkg.getCity(), pkg.getState(),
+                pkg.getZip(), pkg.getDeadline(), pkg.getWeight(), pkg.getSpecialNote());
+        Package view = store.view(slot);
+        view.setVolume(pkg.getVolume());
+        view.setStatus(pkg.getStatus());
+        view.setDeliveryTime(pkg.getDeliveryTime());
     }
 
     /**
@@ -35,6 +89,8 @@ public class PackageHashTable {
      * @return the Package object if found; otherwise, null
      */
     public Package getPackage(int packageId) {
+        if (store != null)
+            return store.getPackage(packageId);
         return packages.get(packageId);
     }
 
@@ -46,11 +102,51 @@ public class PackageHashTable {
      * @param deliveryTime time when the package was delivered (HH:MM format)
      */
     public void updatePackageStatus(int packageId, String status, String deliveryTime) {
-        Package pkg = packages.get(packageId);
-        if (pkg != null) {
+        if (store != null) {
+            Package view = store.getPackage(packageId);
+            if (view == null)
+                return;
+            // Views share the store's columns, lock the store so status and time change together
+            synchronized (store) {
+                view.setStatus(status);
+                view.setDeliveryTime(deliveryTime);
+            }
+            changed.add(packageId);
+            return;
+        }
+        // computeIfPresent holds the entry's lock, status and time change together
+        Package updated = packages.computeIfPresent(packageId, (id, pkg) -> {
             pkg.setStatus(status);
             pkg.setDeliveryTime(deliveryTime);
+            return pkg;
+        });
+        // Recorded after the update, so a snapshot draining changes never reads the old status
+        if (updated != null)
+            changed.add(packageId);
+    }
+
+    /**
+     * Marks a package as changed without going through updatePackageStatus,
+     * for code that sets a package's status directly.
+     *
+     * @param packageId unique identifier of the changed package
+     */
+    public void markChanged(int packageId) {
+        changed.add(packageId);
+    }
+
+    /**
+     * Returns the IDs of packages updated since the last call and clears them.
+     *
+     * @return IDs of changed packages
+     */
+    public Set<Integer> drainChanges() {
+        Set<Integer> drained = new HashSet<>();
+        for (Integer id : changed) {
+            changed.remove(id);
+            drained.add(id);
         }
+        return drained;
     }
 
     /**
@@ -58,10 +154,39 @@ public class PackageHashTable {
      * Each package is printed using its ovridden toString representation.
      */
     public void displayAllPackages() {
-        System.out.println("----- Package Status -----");
-        for (Package pkg : packages.values()) {
-            System.out.println(pkg);
+        // One print for the whole report instead of a synchronized println per package
+        StringBuilder report = new StringBuilder("----- Package Status -----").append(System.lineSeparator());
+        for (int id : getPackageIds()) {
+            report.append(getPackage(id)).append(System.lineSeparator());
+        }
+        System.out.print(report);
+    }
+
+    /**
+     * Records the status of every package to a trace file.
+     *
+     * @param writer trace writer to record to
+     */
+    public void recordAllPackages(TraceWriter writer) {
+        for (int id : getPackageIds()) {
+            Package pkg = getPackage(id);
+            String deliveryTime = pkg.getDeliveryTime();
+            writer.packageStatus(pkg.getPackageId(), pkg.getAddress(), pkg.getStatus(),
+                    "N/A".equals(deliveryTime) ? -1 : App.timeToMinutes(deliveryTime));
+        }
+    }
+
+    /**
+     * @return IDs of every stored package
+     */
+    public Set<Integer> getPackageIds() {
+        if (store != null) {
+            Set<Integer> ids = new LinkedHashSet<>();
+            for (int slot = 0; slot < store.size(); slot++)
+                ids.add(store.getId(slot));
+            return ids;
         }
+        return packages.keySet();
     }
 
     /**
@@ -70,6 +195,8 @@ public class PackageHashTable {
      * @return the size of the PackageHashTable
      */
     public int size() {
+        if (store != null)
+            return store.size();
         return packages.size();
     }
 
@@ -0,0 +1,156 @@
+/**
+ * Streaming quantile estimate over non-negative values with bounded memory.
+ * Values are counted in logarithmic buckets (the DDSketch layout): bucket i
+ * holds values in (gamma^(i-1), gamma^i], so any quantile comes back within
+ * the relative accuracy given to the constructor. Exact zeros get their own
+ * counter. When more than maxBuckets buckets are in use the lowest ones are
+ * merged, which only costs accuracy on the smallest values.
+ */
+import java.util.Arrays;
+
+public class QuantileSketch {
+
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBuckets;
+
+    /** Bucket counts, counts[i] is bucket index (offset + i). */
+    private long[] counts;
+    private int offset;
+    private int used;
+
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+
+    /**
+     * Constructs an empty sketch.
+     *
+     * @param relativeAccuracy relative error of returned quantiles, e.g. 0.01 for 1%
+     * @param maxBuckets       most buckets kept, bounds memory
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1)
+            throw new IllegalArgumentException("relativeAccuracy must be in (0, 1): " + relativeAccuracy);
+        if (maxBuckets < 2)
+            throw new IllegalArgumentException("maxBuckets must be at least 2: " + maxBuckets);
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBuckets = maxBuckets;
+        this.counts = new long[0];
+    }
+
+    /**
+     * Adds a value.
+     *
+     * @param value value to add, must not be negative
+     */
+    public void add(double value) {
+        if (value < 0 || Double.isNaN(value))
+            throw new IllegalArgumentException("QuantileSketch only takes non-negative values: " + value);
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value == 0) {
+            zeroCount++;
+            return;
+        }
+
+        int index = (int) Math.ceil(Math.log(value) / logGamma);
+        if (used == 0) {
+            counts = new long[16];
+            offset = index;
+            used = 1;
+        } else if (index < offset) {
+            int shift = offset - index;
+            if (used + shift > maxBuckets) {
+                // Too far below the lowest bucket, count it there instead
+                index = offset;
+            } else {
+                grow(used + shift);
+                System.arraycopy(counts, 0, counts, shift, used);
+                Arrays.fill(counts, 0, shift, 0);
+                offset = index;
+                used += shift;
+            }
+        } else if (index >= offset + used) {
+            if (index - offset + 1 > maxBuckets)
+                raiseOffset(index - maxBuckets + 1);
+            int needed = index - offset + 1;
+            grow(needed);
+            used = Math.max(used, needed);
+        }
+        counts[index - offset]++;
+    }
+
+    // Makes sure the bucket array can hold n buckets
+    private void grow(int n) {
+        if (n > counts.length)
+            counts = Arrays.copyOf(counts, Math.max(n, counts.length * 2));
+    }
+
+    // Merges every bucket below newOffset into bucket newOffset
+    private void raiseOffset(int newOffset) {
+        int n = newOffset - offset;
+        long merged = 0;
+        for (int i = 0; i < Math.min(n, used); i++)
+            merged += counts[i];
+        if (n >= used) {
+            Arrays.fill(counts, 0, used, 0);
+            used = 1;
+        } else {
+            System.arraycopy(counts, n, counts, 0, used - n);
+            Arrays.fill(counts, used - n, used, 0);
+            used -= n;
+        }
+        counts[0] += merged;
+        offset = newOffset;
+    }
+
+    /**
+     * Estimates a quantile.
+     *
+     * @param q quantile between 0 and 1, e.g. 0.95
+     * @return estimated value, NaN if the sketch is empty
+     */
+    public double quantile(double q) {
+        if (count == 0)
+            return Double.NaN;
+        if (q <= 0)
+            return min;
+        if (q >= 1)
+            return max;
+
+        long rank = (long) Math.ceil(q * count);
+        if (rank <= zeroCount)
+            return 0.0;
+        long seen = zeroCount;
+        for (int i = 0; i < used; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                // Middle of the bucket in relative terms
+                double estimate = 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+                return Math.min(max, Math.max(min, estimate));
+            }
+        }
+        return max;
+    }
+
+    /** @return number of values added */
+    public long getCount() {
+        return count;
+    }
+
+    /** @return mean of the values added, NaN if empty */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /** @return largest value added, NaN if empty */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+}
@@ -0,0 +1,301 @@
+/**
+ * Measures how far produced routes are from optimal.
+ * For every truck the places it drove to get a lower bound on the shortest
+ * route that starts where the truck started, visits every one of them and
+ * ends where the truck ended: the Held-Karp 1-tree bound, tightened with
+ * subgradient optimization of per-stop penalties. The start and end are the
+ * hubs the truck actually left from and came back to, so trucks based at
+ * other hubs or ending at the nearest hub are bounded correctly. A route that
+ * ends somewhere else than it started is bounded as a tour through an extra
+ * node tied to both ends at no cost.
+ *
+ * Costs are shortest paths between the route's places, using only the
+ * distances between those places. The truck's drive is a walk over those
+ * same edges, so it can never be shorter than the best route over shortest
+ * paths, even if the distance table breaks the triangle inequality, a stop
+ * is visited twice, or the truck went back to a hub between trips. The gap
+ * between the truck's real mileage and the bound is an upper bound on how
+ * much better routing could do for that truck. A bound above the mileage
+ * means the inputs are inconsistent (for example a -1 unknown distance was
+ * charged as miles) and is reported as an error.
+ */
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+public class RouteEvaluator {
+
+    /** Subgradient iterations per truck. */
+    private static final int ITERATIONS = 200;
+
+    /** Miles a bound and a mileage may differ by and still count as equal (floating point). */
+    private static final double TOLERANCE = 1e-6;
+
+    /** Result of evaluating one truck. */
+    public static final class TruckBound {
+        private final int truckId;
+        private final int stops;
+        private final double mileage;
+        private final double lowerBound;
+
+        TruckBound(int truckId, int stops, double mileage, double lowerBound) {
+            this.truckId = truckId;
+            this.stops = stops;
+            this.mileage = mileage;
+            this.lowerBound = lowerBound;
+        }
+
+        /** @return truck number */
+        public int getTruckId() {
+            return truckId;
+        }
+
+        /** @return number of stops where packages were delivered */
+        public int getStops() {
+            return stops;
+        }
+
+        /** @return miles the truck actually drove */
+        public double getMileage() {
+            return mileage;
+        }
+
+        /** @return lower bound on the miles needed to visit the same stops */
+        public double getLowerBound() {
+            return lowerBound;
+        }
+
+        /** @return (mileage - lower bound) / lower bound, 0 if the bound is 0, negative if invalid */
+        public double getGap() {
+            return gap(mileage, lowerBound);
+        }
+
+        /** @return false if the bound is above the mileage, which a lower bound cannot be */
+        public boolean isValid() {
+            return lowerBound <= mileage + TOLERANCE;
+        }
+    }
+
+    private RouteEvaluator() {
+    }
+
+    // Relative gap, differences within TOLERANCE are floating point noise and count as 0
+    private static double gap(double mileage, double lowerBound) {
+        if (lowerBound <= 0 || Math.abs(mileage - lowerBound) <= TOLERANCE)
+            return 0.0;
+        return (mileage - lowerBound) / lowerBound;
+    }
+
+    /**
+     * Evaluates every truck in parallel.
+     *
+     * @param trucks trucks that finished their routes
+     * @param graph  distance graph the routes were driven on
+     * @return one result per truck, in the same order
+     */
+    public static List<TruckBound> evaluate(List<Truck> trucks, DistanceGraph graph) {
+        return trucks.parallelStream()
+                .map(truck -> new TruckBound(truck.getTruckId(),
+                        truck.getDeliveryStops(),
+                        truck.getMileage(),
+                        lowerBound(truck.getRoute(), graph, truck.getMileage())))
+                .toList();
+    }
+
+    /**
+     * Held-Karp lower bound on a route from the first place of a driven route
+     * to its last one that visits every place in between.
+     *
+     * @param route      places in the order driven, first is where the truck started
+     * @param graph      distance graph
+     * @param upperBound length of a known route through the places, guides the step size
+     * @return lower bound in miles
+     */
+    public static double lowerBound(List<String> route, DistanceGraph graph, double upperBound) {
+        if (route.isEmpty())
+            return 0.0;
+        String start = route.get(0);
+        String end = route.get(route.size() - 1);
+
+        // Endpoints first, then every other place once; places with no distances were never driven to
+        List<String> nodes = new ArrayList<>();
+        nodes.add(start);
+        if (!end.equals(start))
+            nodes.add(end);
+        for (String place : new LinkedHashSet<>(route)) {
+            if (!nodes.contains(place) && graph.indexOf(place) >= 0)
+                nodes.add(place);
+        }
+
+        double[][] paths = shortestPaths(nodes, graph);
+        int k = nodes.size();
+        if (end.equals(start)) {
+            if (k == 1)
+                return 0.0;
+            if (k == 2)
+                return 2 * paths[0][1];
+            return heldKarp(paths, upperBound);
+        }
+        if (k == 2)
+            return paths[0][1];
+
+        // Open route: node 0 is joined to both ends for free and to nothing else,
+        // so a tour through it is the route from start to end plus nothing
+        double big = 1.0;
+        for (double[] row : paths) {
+            for (double d : row)
+                big += d;
+        }
+        double[][] cost = new double[k + 1][k + 1];
+        for (int i = 0; i < k; i++) {
+            System.arraycopy(paths[i], 0, cost[i + 1], 1, k);
+            double tie = i < 2 ? 0.0 : big;
+            cost[0][i + 1] = tie;
+            cost[i + 1][0] = tie;
+        }
+        return heldKarp(cost, upperBound);
+    }
+
+    // Floyd-Warshall over the direct distances between the given places
+    private static double[][] shortestPaths(List<String> nodes, DistanceGraph graph) {
+        int k = nodes.size();
+        double[][] paths = new double[k][k];
+        for (int i = 0; i < k; i++) {
+            for (int j = i + 1; j < k; j++) {
+                double d = graph.lookupDistance(nodes.get(i), nodes.get(j));
+                paths[i][j] = d >= 0 ? d : Double.POSITIVE_INFINITY;
+                paths[j][i] = paths[i][j];
+            }
+        }
+        for (int via = 0; via < k; via++) {
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    if (paths[i][via] + paths[via][j] < paths[i][j])
+                        paths[i][j] = paths[i][via] + paths[via][j];
+                }
+            }
+        }
+        return paths;
+    }
+
+    // Subgradient optimization of the 1-tree bound
+    private static double heldKarp(double[][] cost, double upperBound) {
+        int n = cost.length;
+        double[] penalty = new double[n];
+        int[] degree = new int[n];
+        double best = 0.0;
+        double lambda = 2.0;
+        int sinceImprovement = 0;
+
+        for (int iter = 0; iter < ITERATIONS; iter++) {
+            double tree = oneTree(cost, penalty, degree);
+            double penaltySum = 0.0;
+            for (double p : penalty)
+                penaltySum += p;
+            double bound = tree - 2 * penaltySum;
+
+            if (bound > best + 1e-9) {
+                best = bound;
+                sinceImprovement = 0;
+            } else if (++sinceImprovement >= 10) {
+                lambda /= 2;
+                sinceImprovement = 0;
+            }
+
+            int norm = 0;
+            for (int i = 0; i < n; i++)
+                norm += (degree[i] - 2) * (degree[i] - 2);
+            if (norm == 0)
+                return bound; // the 1-tree is a tour, so it is optimal
+            if (lambda < 1e-6)
+                break;
+
+            double step = lambda * Math.max(upperBound - bound, 1e-3) / norm;
+            for (int i = 0; i < n; i++)
+                penalty[i] += step * (degree[i] - 2);
+        }
+        return best;
+    }
+
+    // Minimum 1-tree under penalized costs: Prim MST over nodes 1..n-1, plus the two cheapest edges to node 0
+    private static double oneTree(double[][] cost, double[] penalty, int[] degree) {
+        int n = cost.length;
+        Arrays.fill(degree, 0);
+
+        double[] key = new double[n];
+        int[] parent = new int[n];
+        boolean[] inTree = new boolean[n];
+        Arrays.fill(key, Double.MAX_VALUE);
+        Arrays.fill(parent, -1);
+        key[1] = 0.0;
+        double total = 0.0;
+
+        for (int added = 1; added < n; added++) {
+            int u = -1;
+            for (int v = 1; v < n; v++) {
+                if (!inTree[v] && (u < 0 || key[v] < key[u]))
+                    u = v;
+            }
+            inTree[u] = true;
+            total += key[u];
+            if (parent[u] >= 0) {
+                degree[u]++;
+                degree[parent[u]]++;
+            }
+            for (int v = 1; v < n; v++) {
+                double c = cost[u][v] + penalty[u] + penalty[v];
+                if (!inTree[v] && c < key[v]) {
+                    key[v] = c;
+                    parent[v] = u;
+                }
+            }
+        }
+
+        // Two cheapest edges from node 0
+        int first = -1;
+        int second = -1;
+        for (int v = 1; v < n; v++) {
+            double c = cost[0][v] + penalty[0] + penalty[v];
+            if (first < 0 || c < cost[0][first] + penalty[0] + penalty[first]) {
+                second = first;
+                first = v;
+            } else if (second < 0 || c < cost[0][second] + penalty[0] + penalty[second]) {
+                second = v;
+            }
+        }
+        total += cost[0][first] + penalty[0] + penalty[first];
+        total += cost[0][second] + penalty[0] + penalty[second];
+        degree[0] = 2;
+        degree[first]++;
+        degree[second]++;
+        return total;
+    }
+
+    /**
+     * Prints per truck and fleet optimality gaps.
+     *
+     * @param bounds results from evaluate
+     */
+    public static void printReport(List<TruckBound> bounds) {
+        StringBuilder report = new StringBuilder("----- Route Quality -----").append(System.lineSeparator());
+        double mileage = 0.0;
+        double lowerBound = 0.0;
+        for (TruckBound bound : bounds) {
+            report.append(String.format("Truck %d: %d stops, %.2f miles, lower bound %.2f miles, gap %.1f%%",
+                    bound.getTruckId(), bound.getStops(), bound.getMileage(), bound.getLowerBound(),
+                    bound.getGap() * 100));
+            if (!bound.isValid())
+                report.append(" ERROR: lower bound above miles driven, check the distance data");
+            report.append(System.lineSeparator());
+            mileage += bound.getMileage();
+            lowerBound += bound.getLowerBound();
+        }
+        report.append(String.format("Fleet: %.2f miles, lower bound %.2f miles, gap %.1f%%",
+                mileage, lowerBound, gap(mileage, lowerBound) * 100));
+        if (lowerBound > mileage + TOLERANCE)
+            report.append(" ERROR: lower bound above miles driven");
+        report.append(System.lineSeparator());
+        System.out.print(report);
+    }
+}
@@ -0,0 +1,651 @@
+/**
+ * Large neighbourhood search over the whole fleet: which truck carries each
+ * package and the order it is delivered in. Meant for overnight planning,
+ * it is much slower than the nearest neighbor routing in App.
+ *
+ * Every iteration ruins part of the current plan (random packages, or a
+ * package and the ones closest to it) and recreates it by cheapest
+ * insertion. Plans are scored in miles plus penalties for late deliveries,
+ * split delivery groups and packages that fit nowhere. A worse plan is
+ * accepted while it is within a shrinking threshold of the best one.
+ *
+ * Each thread runs its own search from the same start with its own random
+ * generator and preallocated int-indexed buffers, so move evaluation does not
+ * allocate. The best plan over all threads wins, ties go to the lowest
+ * thread. With a fixed seed, thread count and iteration limit the result is
+ * deterministic; a time budget stops threads wherever they are, so it is not.
+ *
+ * The first trucks leave their hub at their current time, one per driver.
+ * With fewer drivers than trucks (see setDrivers) every other truck leaves
+ * when the first driver to get back has driven over to its hub, so its
+ * lateness is scored against the time it really departs.
+ */
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class RouteOptimizer {
+
+    /** Score added per minute a package is late, in miles. */
+    private static final double LATE_PENALTY = 10.0;
+
+    /** Score added per package delivered on a different truck than its group. */
+    private static final double GROUP_PENALTY = 1000.0;
+
+    /** Score added per package that fits on no truck. */
+    private static final double UNASSIGNED_PENALTY = 10000.0;
+
+    /** A finished plan: one delivery order per truck. */
+    public static final class Plan {
+        private final List<List<Package>> routes;
+        private final List<Package> unassigned;
+        private final double miles;
+        private final double score;
+        private final long iterations;
+
+        Plan(List<List<Package>> routes, List<Package> unassigned, double miles, double score, long iterations) {
+            this.routes = routes;
+            this.unassigned = unassigned;
+            this.miles = miles;
+            this.score = score;
+            this.iterations = iterations;
+        }
+
+        /** @return delivery order of truck i, same order as the trucks passed in */
+        public List<Package> getRoute(int i) {
+            return routes.get(i);
+        }
+
+        /** @return packages that did not fit on any truck */
+        public List<Package> getUnassigned() {
+            return unassigned;
+        }
+
+        /** @return planned miles, return legs and drives between hubs included */
+        public double getMiles() {
+            return miles;
+        }
+
+        /** @return planned miles plus penalties, lower is better */
+        public double getScore() {
+            return score;
+        }
+
+        /** @return iterations run over all threads */
+        public long getIterations() {
+            return iterations;
+        }
+    }
+
+    private final DistanceGraph graph;
+    private final long seed;
+    private final int threads;
+    private long maxIterations = 10_000;
+    private long timeBudgetMillis;
+    private long earlyStopIterations;
+    private int drivers;
+
+    /**
+     * Constructs an optimizer.
+     *
+     * @param graph   distance graph, must not change while optimizing
+     * @param seed    random seed
+     * @param threads number of parallel searches
+     */
+    public RouteOptimizer(DistanceGraph graph, long seed, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        this.graph = graph;
+        this.seed = seed;
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the number of iterations each thread runs, 10000 by default.
+     *
+     * @param maxIterations iterations per thread
+     */
+    public void setMaxIterations(long maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Sets a wall clock limit, 0 (default) for none.
+     *
+     * @param timeBudgetMillis milliseconds the search may run
+     */
+    public void setTimeBudgetMillis(long timeBudgetMillis) {
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    /**
+     * Stops a thread after this many iterations without a better plan, 0
+     * (default) never stops early.
+     *
+     * @param earlyStopIterations iterations without improvement
+     */
+    public void setEarlyStopIterations(long earlyStopIterations) {
+        this.earlyStopIterations = earlyStopIterations;
+    }
+
+    /**
+     * Sets how many drivers there are, 0 (default) for one per truck.
+     * Trucks after the first drivers wait, in order, for a driver to return.
+     *
+     * @param drivers number of drivers
+     */
+    public void setDrivers(int drivers) {
+        if (drivers < 0)
+            throw new IllegalArgumentException("drivers must not be negative: " + drivers);
+        this.drivers = drivers;
+    }
+
+    /**
+     * Plans deliveries for a set of packages over a fleet.
+     *
+     * @param packages packages to deliver, all addresses must be in the graph
+     * @param trucks   trucks to use, their capacity, location and time are read,
+     *                 trucks waiting for a driver last
+     * @return best plan found
+     */
+    public Plan optimize(List<Package> packages, List<Truck> trucks) {
+        Problem problem = new Problem(packages, trucks, drivers, graph);
+        long deadline = timeBudgetMillis > 0 ? System.nanoTime() + timeBudgetMillis * 1_000_000L : Long.MAX_VALUE;
+
+        List<Worker> workers = new ArrayList<>();
+        for (int w = 0; w < threads; w++) {
+            // Separate, well spread streams per thread
+            workers.add(new Worker(problem, new SplittableRandom(seed + 0x9E3779B97F4A7C15L * w), deadline));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Worker>> results = new ArrayList<>();
+            for (Worker worker : workers) {
+                results.add(pool.submit(() -> {
+                    worker.search(maxIterations, earlyStopIterations);
+                    return worker;
+                }));
+            }
+            Worker best = null;
+            long iterations = 0;
+            for (Future<Worker> result : results) {
+                Worker worker = result.get();
+                iterations += worker.iterations;
+                if (best == null || worker.best.score < best.best.score)
+                    best = worker;
+            }
+            return best.toPlan(iterations);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Route optimization interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Route optimization failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Int-indexed copy of the input, shared read only by all workers. */
+    private static final class Problem {
+        final List<Package> packages;
+        final double[][] dist;
+        final int[] loc;
+        final double[] weight;
+        final double[] volume;
+        final int[] deadline;
+        final int[][] partners;
+
+        final int[] hub;
+        final int[] start;
+        final int drivers;
+        final int[] maxCount;
+        final double[] maxWeight;
+        final double[] maxVolume;
+
+        Problem(List<Package> packages, List<Truck> trucks, int drivers, DistanceGraph graph) {
+            this.packages = packages;
+            this.dist = graph.matrix();
+
+            int m = packages.size();
+            loc = new int[m];
+            weight = new double[m];
+            volume = new double[m];
+            deadline = new int[m];
+            partners = new int[m][];
+            HashMap<Integer, Integer> indexById = new HashMap<>();
+            for (int p = 0; p < m; p++) {
+                Package pkg = packages.get(p);
+                loc[p] = graph.indexOf(pkg.getAddress());
+                if (loc[p] < 0)
+                    throw new IllegalArgumentException("Address not in distance graph: " + pkg.getAddress());
+                weight[p] = pkg.getWeight();
+                volume[p] = pkg.getVolume();
+                deadline[p] = App.timeToMinutes(pkg.getDeadline());
+                indexById.put(pkg.getPackageId(), p);
+            }
+            // Group partners both ways, the notes only list them on one side
+            List<List<Integer>> links = new ArrayList<>();
+            for (int p = 0; p < m; p++)
+                links.add(new ArrayList<>());
+            for (int p = 0; p < m; p++) {
+                for (int id : packages.get(p).getGroupWith()) {
+                    Integer q = indexById.get(id);
+                    if (q != null && q != p) {
+                        links.get(p).add(q);
+                        links.get(q).add(p);
+                    }
+                }
+            }
+            for (int p = 0; p < m; p++)
+                partners[p] = links.get(p).stream().distinct().mapToInt(Integer::intValue).toArray();
+
+            int t = trucks.size();
+            this.drivers = drivers == 0 ? t : Math.min(drivers, t);
+            hub = new int[t];
+            start = new int[t];
+            maxCount = new int[t];
+            maxWeight = new double[t];
+            maxVolume = new double[t];
+            for (int i = 0; i < t; i++) {
+                Truck truck = trucks.get(i);
+                hub[i] = graph.indexOf(truck.getCurrentLocation());
+                start[i] = App.timeToMinutes(truck.getCurrentTime());
+                maxCount[i] = Math.min(truck.getMaxPackages(), m);
+                maxWeight[i] = truck.getMaxWeight();
+                maxVolume[i] = truck.getMaxVolume();
+            }
+        }
+    }
+
+    /** A plan as flat arrays, copied with arraycopy so a search never allocates. */
+    private static final class Solution {
+        final int[][] route;
+        final int[] length;
+        final double[] weight;
+        final double[] volume;
+        final double[] cost;
+        final double[] start;
+        final int[] routeOf;
+        double score;
+
+        Solution(Problem problem) {
+            int t = problem.hub.length;
+            route = new int[t][];
+            for (int i = 0; i < t; i++)
+                route[i] = new int[problem.maxCount[i]];
+            length = new int[t];
+            weight = new double[t];
+            volume = new double[t];
+            cost = new double[t];
+            start = new double[t];
+            for (int i = 0; i < t; i++)
+                start[i] = problem.start[i];
+            routeOf = new int[problem.loc.length];
+        }
+
+        void copyFrom(Solution other) {
+            for (int i = 0; i < route.length; i++)
+                System.arraycopy(other.route[i], 0, route[i], 0, other.length[i]);
+            System.arraycopy(other.length, 0, length, 0, length.length);
+            System.arraycopy(other.weight, 0, weight, 0, weight.length);
+            System.arraycopy(other.volume, 0, volume, 0, volume.length);
+            System.arraycopy(other.cost, 0, cost, 0, cost.length);
+            System.arraycopy(other.start, 0, start, 0, start.length);
+            System.arraycopy(other.routeOf, 0, routeOf, 0, routeOf.length);
+            score = other.score;
+        }
+    }
+
+    /** One thread's search, owns all of its buffers. */
+    private static final class Worker {
+        final Problem problem;
+        final SplittableRandom random;
+        final long deadline;
+
+        final Solution current;
+        final Solution candidate;
+        final Solution best;
+
+        // Scratch space reused by every iteration
+        final int[] removed;
+        final boolean[] picked;
+        final boolean[] dirty;
+        final double[] driverFree;
+        final int[] driverHub;
+
+        long iterations;
+
+        Worker(Problem problem, SplittableRandom random, long deadline) {
+            this.problem = problem;
+            this.random = random;
+            this.deadline = deadline;
+            current = new Solution(problem);
+            candidate = new Solution(problem);
+            best = new Solution(problem);
+            removed = new int[problem.loc.length];
+            picked = new boolean[problem.loc.length];
+            dirty = new boolean[problem.hub.length];
+            driverFree = new double[problem.drivers];
+            driverHub = new int[problem.drivers];
+        }
+
+        void search(long maxIterations, long earlyStop) {
+            // Start: everything unassigned, inserted earliest deadline first
+            int m = problem.loc.length;
+            for (int p = 0; p < m; p++) {
+                current.routeOf[p] = -1;
+                removed[p] = p;
+            }
+            sortByDeadline(removed, m);
+            recreate(current, m);
+            current.score = score(current);
+            best.copyFrom(current);
+            if (m == 0)
+                return;
+
+            long lastImprovement = 0;
+            int maxRemove = Math.max(1, Math.min(m, 2 + m / 4));
+            for (long iter = 1; iter <= maxIterations; iter++) {
+                if (System.nanoTime() > deadline)
+                    break;
+                if (earlyStop > 0 && iter - lastImprovement > earlyStop)
+                    break;
+                iterations++;
+
+                candidate.copyFrom(current);
+                int q = 1 + random.nextInt(maxRemove);
+                int count = random.nextBoolean() ? randomRuin(candidate, q) : relatedRuin(candidate, q);
+                shuffle(removed, count);
+                recreate(candidate, count);
+                candidate.score = score(candidate);
+
+                // Record-to-record acceptance, threshold shrinks as the search goes on
+                double threshold = 0.02 * (1.0 - (double) iter / maxIterations);
+                if (candidate.score < current.score || candidate.score < best.score * (1.0 + threshold))
+                    current.copyFrom(candidate);
+                if (candidate.score < best.score - 1e-9) {
+                    best.copyFrom(candidate);
+                    lastImprovement = iter;
+                }
+            }
+        }
+
+        // Removes q random assigned packages into removed[], returns how many
+        private int randomRuin(Solution s, int q) {
+            int m = problem.loc.length;
+            int count = 0;
+            for (int tries = 0; count < q && tries < 4 * q; tries++) {
+                int p = random.nextInt(m);
+                if (s.routeOf[p] >= 0) {
+                    remove(s, p);
+                    removed[count++] = p;
+                }
+            }
+            return finishRuin(s, count);
+        }
+
+        // Removes a random package and the q - 1 assigned packages closest to it
+        private int relatedRuin(Solution s, int q) {
+            int m = problem.loc.length;
+            int seedPkg = random.nextInt(m);
+            int count = 0;
+            while (count < q) {
+                int closest = -1;
+                double closestDistance = Double.MAX_VALUE;
+                for (int p = 0; p < m; p++) {
+                    if (picked[p] || s.routeOf[p] < 0)
+                        continue;
+                    double d = problem.dist[problem.loc[seedPkg]][problem.loc[p]];
+                    if (d < closestDistance) {
+                        closestDistance = d;
+                        closest = p;
+                    }
+                }
+                if (closest < 0)
+                    break;
+                picked[closest] = true;
+                removed[count++] = closest;
+            }
+            for (int i = 0; i < count; i++) {
+                picked[removed[i]] = false;
+                remove(s, removed[i]);
+            }
+            return finishRuin(s, count);
+        }
+
+        // Adds packages nothing could fit before, then refreshes costs of changed routes
+        private int finishRuin(Solution s, int count) {
+            for (int i = 0; i < count; i++)
+                picked[removed[i]] = true;
+            int ruined = count;
+            for (int p = 0; p < problem.loc.length; p++) {
+                if (s.routeOf[p] < 0 && !picked[p])
+                    removed[count++] = p;
+            }
+            for (int i = 0; i < ruined; i++)
+                picked[removed[i]] = false;
+            for (int t = 0; t < dirty.length; t++) {
+                if (dirty[t]) {
+                    s.cost[t] = routeCost(s, t, -1, -1);
+                    dirty[t] = false;
+                }
+            }
+            return count;
+        }
+
+        private void remove(Solution s, int p) {
+            int t = s.routeOf[p];
+            int[] r = s.route[t];
+            int len = s.length[t];
+            for (int i = 0; i < len; i++) {
+                if (r[i] == p) {
+                    System.arraycopy(r, i + 1, r, i, len - i - 1);
+                    break;
+                }
+            }
+            s.length[t] = len - 1;
+            s.weight[t] -= problem.weight[p];
+            s.volume[t] -= problem.volume[p];
+            s.routeOf[p] = -1;
+            dirty[t] = true;
+        }
+
+        // Cheapest insertion of removed[0..count), grouped packages follow their partners' truck
+        private void recreate(Solution s, int count) {
+            for (int i = 0; i < count; i++) {
+                int p = removed[i];
+                int onlyTruck = -1;
+                for (int partner : problem.partners[p]) {
+                    if (s.routeOf[partner] >= 0) {
+                        onlyTruck = s.routeOf[partner];
+                        break;
+                    }
+                }
+
+                int bestTruck = -1;
+                int bestPos = -1;
+                double bestCost = 0.0;
+                double bestDelta = Double.MAX_VALUE;
+                for (int t = 0; t < problem.hub.length; t++) {
+                    if (onlyTruck >= 0 && t != onlyTruck)
+                        continue;
+                    if (s.length[t] >= problem.maxCount[t]
+                            || s.weight[t] + problem.weight[p] > problem.maxWeight[t]
+                            || s.volume[t] + problem.volume[p] > problem.maxVolume[t])
+                        continue;
+                    for (int pos = 0; pos <= s.length[t]; pos++) {
+                        double cost = routeCost(s, t, pos, p);
+                        double delta = cost - s.cost[t];
+                        if (delta < bestDelta) {
+                            bestDelta = delta;
+                            bestTruck = t;
+                            bestPos = pos;
+                            bestCost = cost;
+                        }
+                    }
+                }
+                if (bestTruck < 0)
+                    continue; // stays unassigned, the score penalizes it
+
+                int[] r = s.route[bestTruck];
+                int len = s.length[bestTruck];
+                System.arraycopy(r, bestPos, r, bestPos + 1, len - bestPos);
+                r[bestPos] = p;
+                s.length[bestTruck] = len + 1;
+                s.weight[bestTruck] += problem.weight[p];
+                s.volume[bestTruck] += problem.volume[p];
+                s.cost[bestTruck] = bestCost;
+                s.routeOf[p] = bestTruck;
+            }
+        }
+
+        /**
+         * Miles plus lateness penalty of a route leaving at its scheduled
+         * start, optionally with package insert placed at position pos,
+         * without building the new route.
+         */
+        private double routeCost(Solution s, int t, int pos, int insert) {
+            int[] r = s.route[t];
+            int len = s.length[t];
+            int total = insert >= 0 ? len + 1 : len;
+            int at = problem.hub[t];
+            double miles = 0.0;
+            double minute = s.start[t];
+            double late = 0.0;
+            for (int i = 0; i < total; i++) {
+                int p = insert < 0 || i < pos ? r[i] : (i == pos ? insert : r[i - 1]);
+                double d = problem.dist[at][problem.loc[p]];
+                miles += d;
+                minute += d / Truck.SPEED_MPH * 60;
+                if (minute > problem.deadline[p])
+                    late += minute - problem.deadline[p];
+                at = problem.loc[p];
+            }
+            miles += problem.dist[at][problem.hub[t]];
+            return miles + LATE_PENALTY * late;
+        }
+
+        // Miles of a route, return leg included
+        private double routeMiles(Solution s, int t) {
+            int at = problem.hub[t];
+            double miles = 0.0;
+            for (int i = 0; i < s.length[t]; i++) {
+                int p = s.route[t][i];
+                miles += problem.dist[at][problem.loc[p]];
+                at = problem.loc[p];
+            }
+            return miles + problem.dist[at][problem.hub[t]];
+        }
+
+        /**
+         * Starts each truck past the driver count when the first driver to
+         * finish reaches its hub, re-costing it if that moved its start.
+         *
+         * @return miles drivers drive between hubs to pick up those trucks
+         */
+        private double schedule(Solution s) {
+            int drivers = problem.drivers;
+            for (int d = 0; d < drivers; d++) {
+                driverFree[d] = s.start[d] + routeMiles(s, d) / Truck.SPEED_MPH * 60;
+                driverHub[d] = problem.hub[d];
+            }
+            double deadhead = 0.0;
+            for (int t = drivers; t < problem.hub.length; t++) {
+                if (s.length[t] == 0)
+                    continue; // an empty truck stays at its hub, no driver needed
+                int driver = 0;
+                double arrive = Double.MAX_VALUE;
+                for (int d = 0; d < drivers; d++) {
+                    double a = driverFree[d] + hubDistance(driverHub[d], problem.hub[t]) / Truck.SPEED_MPH * 60;
+                    if (a < arrive) {
+                        arrive = a;
+                        driver = d;
+                    }
+                }
+                deadhead += hubDistance(driverHub[driver], problem.hub[t]);
+                double start = Math.max(problem.start[t], arrive);
+                if (start != s.start[t]) {
+                    s.start[t] = start;
+                    s.cost[t] = routeCost(s, t, -1, -1);
+                }
+                driverFree[driver] = start + routeMiles(s, t) / Truck.SPEED_MPH * 60;
+                driverHub[driver] = problem.hub[t];
+            }
+            return deadhead;
+        }
+
+        // Hubs are always in the table, but never add an unknown (-1) distance
+        private double hubDistance(int from, int to) {
+            return Math.max(0.0, problem.dist[from][to]);
+        }
+
+        private double score(Solution s) {
+            double score = schedule(s);
+            for (double cost : s.cost)
+                score += cost;
+            for (int p = 0; p < s.routeOf.length; p++) {
+                if (s.routeOf[p] < 0) {
+                    score += UNASSIGNED_PENALTY;
+                    continue;
+                }
+                for (int partner : problem.partners[p]) {
+                    if (s.routeOf[partner] != s.routeOf[p])
+                        score += GROUP_PENALTY;
+                }
+            }
+            return score;
+        }
+
+        // Insertion sort, only used once on the starting order
+        private void sortByDeadline(int[] items, int count) {
+            for (int i = 1; i < count; i++) {
+                int item = items[i];
+                int j = i - 1;
+                while (j >= 0 && problem.deadline[items[j]] > problem.deadline[item]) {
+                    items[j + 1] = items[j];
+                    j--;
+                }
+                items[j + 1] = item;
+            }
+        }
+
+        private void shuffle(int[] items, int count) {
+            for (int i = count - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = items[i];
+                items[i] = items[j];
+                items[j] = tmp;
+            }
+        }
+
+        // Converts the best solution back to packages
+        Plan toPlan(long totalIterations) {
+            List<List<Package>> routes = new ArrayList<>();
+            double miles = schedule(best);
+            for (int t = 0; t < best.length.length; t++) {
+                List<Package> route = new ArrayList<>();
+                int at = problem.hub[t];
+                for (int i = 0; i < best.length[t]; i++) {
+                    int p = best.route[t][i];
+                    route.add(problem.packages.get(p));
+                    miles += problem.dist[at][problem.loc[p]];
+                    at = problem.loc[p];
+                }
+                miles += problem.dist[at][problem.hub[t]];
+                routes.add(route);
+            }
+            List<Package> unassigned = new ArrayList<>();
+            for (int p = 0; p < best.routeOf.length; p++) {
+                if (best.routeOf[p] < 0)
+                    unassigned.add(problem.packages.get(p));
+            }
+            return new Plan(routes, unassigned, miles, best.score, totalIterations);
+        }
+    }
+}
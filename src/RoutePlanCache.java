@@ -0,0 +1,196 @@
+/**
+ * Bounded cache of previously computed delivery routes.
+ * A route is keyed by the set of stops a truck has to visit, where it starts
+ * and the time it leaves, so re-running the same load (scenario sweeps,
+ * loading variants that end up with the same stops) skips the nearest
+ * neighbor search and replays the stored stop order instead.
+ *
+ * Eviction is least recently used once the cache holds maxEntries plans.
+ */
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class RoutePlanCache {
+
+    /**
+     * A stored route: the distinct stops in visiting order and the leg driven
+     * to reach each stop. The way back is not stored, the hub a truck ends at
+     * depends on the truck and --nearest-hub, not on its stops.
+     */
+    public static final class RoutePlan {
+        private final String[] stops;
+        private final double[] legs;
+
+        /**
+         * @param stops distinct stop addresses in visiting order
+         * @param legs  miles driven to reach each stop (same length as stops)
+         */
+        public RoutePlan(List<String> stops, List<Double> legs) {
+            this.stops = stops.toArray(new String[0]);
+            this.legs = new double[legs.size()];
+            for (int i = 0; i < this.legs.length; i++)
+                this.legs[i] = legs.get(i);
+        }
+
+        /** @return number of distinct stops on the route */
+        public int stopCount() {
+            return stops.length;
+        }
+
+        /** @return address of stop i */
+        public String getStop(int i) {
+            return stops[i];
+        }
+
+        /** @return miles driven to reach stop i */
+        public double getLeg(int i) {
+            return legs[i];
+        }
+    }
+
+    /**
+     * Canonical key of a routing problem. Stops are de-duplicated and sorted so
+     * the load order of the truck does not matter.
+     */
+    public static final class Key {
+        private final String[] stops;
+        private final String start;
+        private final String startTime;
+        private final int hash;
+
+        private Key(String[] stops, String start, String startTime) {
+            this.stops = stops;
+            this.start = start;
+            this.startTime = startTime;
+            this.hash = 31 * (31 * Arrays.hashCode(stops) + start.hashCode()) + startTime.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                    && start.equals(other.start)
+                    && startTime.equals(other.startTime)
+                    && Arrays.equals(stops, other.stops);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** Maximum number of plans kept before the least recently used is evicted. */
+    private final int maxEntries;
+
+    /** Access ordered map, eldest entry is the least recently used plan. */
+    private final LinkedHashMap<Key, RoutePlan> plans;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxEntries maximum number of plans to keep, must be positive
+     */
+    public RoutePlanCache(int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        this.maxEntries = maxEntries;
+        this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, RoutePlan> eldest) {
+                if (size() > RoutePlanCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Builds the canonical key for a set of stops.
+     *
+     * @param stops     stop addresses, duplicates and order are ignored
+     * @param start     address the truck starts from
+     * @param startTime time the truck leaves (HH:MM)
+     * @return key to use with get/put
+     */
+    public static Key keyOf(Collection<String> stops, String start, String startTime) {
+        TreeSet<String> sorted = new TreeSet<>(stops);
+        return new Key(sorted.toArray(new String[0]), start, startTime);
+    }
+
+    /**
+     * Looks up a plan and records a hit or a miss.
+     *
+     * @param key key built with keyOf
+     * @return stored plan, or null if the route has not been computed yet
+     */
+    public synchronized RoutePlan get(Key key) {
+        RoutePlan plan = plans.get(key);
+        if (plan != null)
+            hits++;
+        else
+            misses++;
+        return plan;
+    }
+
+    /**
+     * Stores a computed plan, evicting the least recently used one if full.
+     *
+     * @param key  key built with keyOf
+     * @param plan route computed for that key
+     */
+    public synchronized void put(Key key, RoutePlan plan) {
+        plans.put(key, plan);
+    }
+
+    /** Removes all stored plans, metrics are kept. */
+    public synchronized void clear() {
+        plans.clear();
+    }
+
+    /** @return number of plans currently stored */
+    public synchronized int size() {
+        return plans.size();
+    }
+
+    /** @return number of lookups that found a plan */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** @return number of lookups that had to compute the route */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** @return number of plans dropped because the cache was full */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /** @return fraction of lookups that were hits, 0 if nothing was looked up */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("RoutePlanCache[size=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                plans.size(), maxEntries, hits, misses, evictions);
+    }
+}
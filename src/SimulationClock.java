@@ -0,0 +1,52 @@
+/**
+ * Simulated clock for the live simulation.
+ * Simulated time runs at a fixed multiple of real time, starting from a
+ * given minute of the day when the clock is created.
+ */
+public class SimulationClock {
+
+    /** Simulated minute of the day the clock started at. */
+    private final int startMinute;
+
+    /** Simulated minutes that pass per real second. */
+    private final double minutesPerSecond;
+
+    /** Real time the clock started at, from System.nanoTime. */
+    private final long startNanos;
+
+    /**
+     * Constructs a clock that starts now.
+     *
+     * @param startMinute      simulated minute of the day to start at (480 = 08:00)
+     * @param minutesPerSecond simulated minutes per real second, 60 runs one hour per second
+     */
+    public SimulationClock(int startMinute, double minutesPerSecond) {
+        if (minutesPerSecond <= 0)
+            throw new IllegalArgumentException("minutesPerSecond must be positive: " + minutesPerSecond);
+        this.startMinute = startMinute;
+        this.minutesPerSecond = minutesPerSecond;
+        this.startNanos = System.nanoTime();
+    }
+
+    /** @return current simulated time in minutes after midnight */
+    public double now() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return startMinute + seconds * minutesPerSecond;
+    }
+
+    /** @return current simulated time in HH:MM format */
+    public String nowAsTime() {
+        return App.minutesToTime((int) now());
+    }
+
+    /**
+     * Real nanoseconds left until the clock reaches a simulated minute.
+     *
+     * @param minute simulated minute after midnight
+     * @return nanoseconds to wait, 0 if the minute has already passed
+     */
+    public long nanosUntil(double minute) {
+        double seconds = (minute - now()) / minutesPerSecond;
+        return seconds <= 0 ? 0 : (long) (seconds * 1e9);
+    }
+}
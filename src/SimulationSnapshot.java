@@ -0,0 +1,260 @@
+/**
+ * Saved state of a simulation for what-if branching: every truck's location,
+ * time, mileage and remaining packages, plus every package's status and
+ * delivery time.
+ *
+ * Snapshots form a tree. The root holds every package; a child only holds
+ * the packages that differ from its parent and looks the rest up through
+ * its parents, so forking is O(1) and capturing a child is O(changed).
+ * Restoring only writes packages that changed on the way from the state the
+ * simulation is at to the snapshot being restored, found from the
+ * PackageHashTable's change log, the packages on trucks, and the snapshots'
+ * own deltas.
+ *
+ * A snapshot can be edited (setTruckTime, setPackageState) until it is
+ * forked; after that it is shared by its children and edits throw.
+ *
+ * Typical use, "what if truck 2 leaves at 9:05":
+ * <pre>
+ * SimulationSnapshot midDay = SimulationSnapshot.capture(pkgTable, trucks, null);
+ * SimulationSnapshot branch = midDay.fork();
+ * branch.setTruckTime(2, "09:05");
+ * branch.restore(pkgTable, trucks, midDay);
+ * // ... run deliveries, then restore midDay (or another branch) the same way
+ * </pre>
+ */
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class SimulationSnapshot {
+
+    /** Saved status of one package. */
+    private static final class PackageState {
+        final String status;
+        final String deliveryTime;
+
+        PackageState(String status, String deliveryTime) {
+            this.status = status;
+            this.deliveryTime = deliveryTime;
+        }
+    }
+
+    /** Saved state of one truck. */
+    private static final class TruckState {
+        final String location;
+        final String time;
+        final double mileage;
+        final int[] loadedIds;
+        final List<String> route;
+        final int deliveryStops;
+
+        TruckState(String location, String time, double mileage, int[] loadedIds, List<String> route,
+                int deliveryStops) {
+            this.location = location;
+            this.time = time;
+            this.mileage = mileage;
+            this.loadedIds = loadedIds;
+            this.route = route;
+            this.deliveryStops = deliveryStops;
+        }
+
+        static TruckState of(Truck truck) {
+            List<Package> loaded = truck.getLoadedPackages();
+            int[] ids = new int[loaded.size()];
+            for (int i = 0; i < ids.length; i++)
+                ids[i] = loaded.get(i).getPackageId();
+            return new TruckState(truck.getCurrentLocation(), truck.getCurrentTime(), truck.getMileage(), ids,
+                    List.copyOf(truck.getRoute()), truck.getDeliveryStops());
+        }
+    }
+
+    private final SimulationSnapshot parent;
+    private final int depth;
+
+    /** Packages that differ from the parent (all packages for the root). */
+    private final HashMap<Integer, PackageState> packages;
+
+    /** Every truck's state, by truck number. Shared with the parent until edited. */
+    private Map<Integer, TruckState> trucks;
+    private boolean trucksShared;
+
+    private boolean forked;
+
+    private SimulationSnapshot(SimulationSnapshot parent, HashMap<Integer, PackageState> packages,
+            Map<Integer, TruckState> trucks, boolean trucksShared) {
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+        this.packages = packages;
+        this.trucks = trucks;
+        this.trucksShared = trucksShared;
+    }
+
+    /**
+     * Captures the live simulation state.
+     * Without a base this copies every package. With a base, which must be
+     * the snapshot the simulation was last captured as or restored to, only
+     * packages changed since then are stored.
+     *
+     * @param pkgTable package table of the simulation
+     * @param fleet    trucks of the simulation
+     * @param base     snapshot the live state was last synced with, or null
+     * @return the new snapshot
+     */
+    public static SimulationSnapshot capture(PackageHashTable pkgTable, List<Truck> fleet, SimulationSnapshot base) {
+        Set<Integer> ids;
+        if (base == null) {
+            pkgTable.drainChanges();
+            ids = pkgTable.getPackageIds();
+        } else {
+            base.forked = true;
+            ids = pkgTable.drainChanges();
+            addLoadedIds(ids, fleet, base);
+        }
+
+        HashMap<Integer, PackageState> changed = new HashMap<>();
+        for (int id : ids) {
+            Package pkg = pkgTable.getPackage(id);
+            if (pkg == null)
+                continue;
+            PackageState state = new PackageState(pkg.getStatus(), pkg.getDeliveryTime());
+            if (base == null || !sameState(base.packageState(id), state))
+                changed.put(id, state);
+        }
+
+        HashMap<Integer, TruckState> truckStates = new HashMap<>();
+        for (Truck truck : fleet)
+            truckStates.put(truck.getTruckId(), TruckState.of(truck));
+        return new SimulationSnapshot(base, changed, truckStates, false);
+    }
+
+    /**
+     * Creates a child with the same state. O(1), nothing is copied until the
+     * child is edited.
+     *
+     * @return the new snapshot
+     */
+    public SimulationSnapshot fork() {
+        forked = true;
+        return new SimulationSnapshot(this, new HashMap<>(), trucks, true);
+    }
+
+    /**
+     * Changes a truck's time in this snapshot, e.g. a later departure.
+     *
+     * @param truckId truck number
+     * @param time    new time in HH:MM format
+     */
+    public void setTruckTime(int truckId, String time) {
+        TruckState old = editableTrucks().get(truckId);
+        if (old == null)
+            throw new IllegalArgumentException("No truck " + truckId + " in snapshot");
+        trucks.put(truckId, new TruckState(old.location, time, old.mileage, old.loadedIds, old.route,
+                old.deliveryStops));
+    }
+
+    /**
+     * Changes a package's status in this snapshot.
+     *
+     * @param packageId    package to change
+     * @param status       new status
+     * @param deliveryTime new delivery time
+     */
+    public void setPackageState(int packageId, String status, String deliveryTime) {
+        checkEditable();
+        packages.put(packageId, new PackageState(status, deliveryTime));
+    }
+
+    /**
+     * Puts the live simulation back into this snapshot's state.
+     *
+     * @param pkgTable package table of the simulation
+     * @param fleet    trucks of the simulation
+     * @param current  snapshot the live state was last captured as or restored to
+     */
+    public void restore(PackageHashTable pkgTable, List<Truck> fleet, SimulationSnapshot current) {
+        // Everything that can differ: live changes since current, plus both paths to the common ancestor
+        Set<Integer> ids = pkgTable.drainChanges();
+        addLoadedIds(ids, fleet, current);
+        addLoadedIds(ids, List.of(), this);
+        SimulationSnapshot a = current;
+        SimulationSnapshot b = this;
+        while (a != b) {
+            if (a.depth >= b.depth) {
+                ids.addAll(a.packages.keySet());
+                a = a.parent;
+            } else {
+                ids.addAll(b.packages.keySet());
+                b = b.parent;
+            }
+            if (a == null || b == null)
+                throw new IllegalArgumentException("Snapshots are not from the same simulation");
+        }
+
+        for (int id : ids) {
+            Package pkg = pkgTable.getPackage(id);
+            PackageState state = packageState(id);
+            if (pkg != null && state != null) {
+                pkg.setStatus(state.status);
+                pkg.setDeliveryTime(state.deliveryTime);
+            }
+        }
+
+        for (Truck truck : fleet) {
+            TruckState state = trucks.get(truck.getTruckId());
+            if (state == null)
+                continue;
+            List<Package> loaded = new ArrayList<>(state.loadedIds.length);
+            for (int id : state.loadedIds)
+                loaded.add(pkgTable.getPackage(id));
+            truck.restoreState(state.location, state.time, state.mileage, loaded, state.route, state.deliveryStops);
+        }
+    }
+
+    /** @return number of packages stored in this snapshot itself, not its parents */
+    public int getDeltaSize() {
+        return packages.size();
+    }
+
+    // Looks a package up through the parents, O(depth)
+    private PackageState packageState(int packageId) {
+        for (SimulationSnapshot s = this; s != null; s = s.parent) {
+            PackageState state = s.packages.get(packageId);
+            if (state != null)
+                return state;
+        }
+        return null;
+    }
+
+    // Packages on live trucks and on the trucks of a snapshot
+    private static void addLoadedIds(Set<Integer> ids, List<Truck> fleet, SimulationSnapshot snapshot) {
+        for (Truck truck : fleet) {
+            for (Package pkg : truck.getLoadedPackages())
+                ids.add(pkg.getPackageId());
+        }
+        for (TruckState state : snapshot.trucks.values()) {
+            for (int id : state.loadedIds)
+                ids.add(id);
+        }
+    }
+
+    private static boolean sameState(PackageState a, PackageState b) {
+        return a != null && a.status.equals(b.status) && a.deliveryTime.equals(b.deliveryTime);
+    }
+
+    private Map<Integer, TruckState> editableTrucks() {
+        checkEditable();
+        if (trucksShared) {
+            trucks = new HashMap<>(trucks);
+            trucksShared = false;
+        }
+        return trucks;
+    }
+
+    private void checkEditable() {
+        if (forked)
+            throw new IllegalStateException("Snapshot has been forked, fork it again to edit");
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.List;
+
+/**
+ * Package that holds its own data in fields, as loaded from the package
+ * file. See ColumnarPackageStore.PackageView for packages kept in columns.
+ */
+public class StandalonePackage extends Package {
+    // Variables
+    /** Unique ID assigned to the package. */
+    private int packageId;
+
+    /** Street address for package delivery. */
+    private String address;
+
+    /** Index of the address in the DistanceGraph, -1 until resolved. */
+    private int addressId = -1;
+
+    /** City for package delivery. */
+    private String city;
+
+    /** State abbreviation for delivery location. */
+    private String state;
+
+    /** Zip code for delivery location. */
+    private String zip;
+
+    /** Delivery deadline (e.g., "EOD", "10:30 AM"). */
+    private String deadline;
+
+    /** Weight of the package in kilograms. */
+    private double weight;
+
+    /** Volume of the package, 0 if unknown. */
+    private double volume;
+
+    /** Current status of the package ("At hub", "En route", "Delivered"). */
+    private String status;
+
+    /** Recorded time when package was delivered (formatted as HH:MM). */
+    private String deliveryTime;
+
+    /** Special notes or constraints associated with this package. */
+    private String specialNote;
+
+    /** If the package is grouped with other packages */
+    private List<Integer> groupWith;
+
+    // Constructor
+    /**
+     * Constructs a new Package with given delivery details.
+     * packageId must be unique, system does not set unique ID, but receives a
+     * unique ID
+     *
+     * @param packageId   unique identifier for the package
+     * @param address     street address for delivery
+     * @param city        city name
+     * @param state       state abbreviation
+     * @param zip         zip code
+     * @param deadline    delivery deadline
+     * @param weight      package weight
+     * @param specialNote special instructions or constraints
+     */
+    public StandalonePackage(int packageId, String address, String city, String state,
+            String zip, String deadline, double weight, String specialNote) {
+        this.packageId = packageId;
+        this.address = address;
+        this.city = city;
+        this.state = state;
+        this.zip = zip;
+        this.deadline = deadline;
+        this.weight = weight;
+        this.status = "At hub";
+        this.deliveryTime = "N/A";
+        this.specialNote = specialNote;
+        this.groupWith = parseGroupWith(specialNote);
+    }
+
+    // Getters
+    @Override
+    public int getPackageId() {
+        return packageId;
+    }
+
+    @Override
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public int getAddressId() {
+        return addressId;
+    }
+
+    @Override
+    public String getCity() {
+        return city;
+    }
+
+    @Override
+    public String getState() {
+        return state;
+    }
+
+    @Override
+    public String getZip() {
+        return zip;
+    }
+
+    @Override
+    public String getDeadline() {
+        return deadline;
+    }
+
+    @Override
+    public double getWeight() {
+        return weight;
+    }
+
+    @Override
+    public double getVolume() {
+        return volume;
+    }
+
+    @Override
+    public String getStatus() {
+        return status;
+    }
+
+    @Override
+    public String getDeliveryTime() {
+        return deliveryTime;
+    }
+
+    @Override
+    public String getSpecialNote() {
+        return specialNote;
+    }
+
+    @Override
+    public List<Integer> getGroupWith() {
+        return groupWith;
+    }
+
+    // Setters
+    @Override
+    public void setAddress(String address) {
+        this.address = address;
+        this.addressId = -1; // needs resolving again
+    }
+
+    @Override
+    public void setAddressId(int addressId) {
+        this.addressId = addressId;
+    }
+
+    @Override
+    public void setVolume(double volume) {
+        this.volume = volume;
+    }
+
+    @Override
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @Override
+    public void setDeliveryTime(String deliveryTime) {
+        this.deliveryTime = deliveryTime;
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Command line tool that pretty-prints a trace file written by TraceWriter.
+ * Binary traces are detected by their "WGTR" magic, anything else is read as
+ * CSV.
+ *
+ * Usage: java TraceDecoder trace-file
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TraceDecoder {
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java TraceDecoder trace-file");
+            return;
+        }
+
+        // Each record is printed as soon as it is decoded, only the writer's buffer is held
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+        try {
+            if (isBinary(args[0]))
+                decodeBinary(args[0], out);
+            else
+                decodeCsv(args[0], out);
+        } catch (IOException e) {
+            out.flush();
+            System.err.println("Error reading trace file: " + e.getMessage());
+        }
+        out.flush();
+    }
+
+    // True if the file starts with the binary trace magic
+    private static boolean isBinary(String file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] magic = in.readNBytes(TraceWriter.MAGIC.length);
+            return Arrays.equals(magic, TraceWriter.MAGIC);
+        }
+    }
+
+    private static void decodeBinary(String file, PrintWriter out) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            in.readFully(new byte[TraceWriter.MAGIC.length]);
+            int version = in.readInt();
+            if (version != TraceWriter.VERSION)
+                throw new IOException("Unsupported trace version " + version);
+
+            List<String> strings = new ArrayList<>();
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    break; // end of trace
+                }
+
+                if (type == TraceWriter.STRING) {
+                    int id = in.readInt();
+                    byte[] bytes = new byte[in.readShort() & 0xFFFF];
+                    in.readFully(bytes);
+                    if (id != strings.size())
+                        throw new IOException("String ids out of order at id " + id);
+                    strings.add(new String(bytes, StandardCharsets.UTF_8));
+                    continue;
+                }
+
+                int truckId = in.readInt();
+                int packageId = in.readInt();
+                int from = in.readInt();
+                int to = in.readInt();
+                int minute = in.readInt();
+                double miles = in.readDouble();
+                double mileage = in.readDouble();
+                print(out, type, truckId, packageId,
+                        from < 0 ? null : strings.get(from),
+                        to < 0 ? null : strings.get(to),
+                        minute, miles, mileage);
+            }
+        }
+    }
+
+    private static void decodeCsv(String file, PrintWriter out) throws IOException {
+        try (BufferedReader br = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line = br.readLine(); // header
+            while ((line = br.readLine()) != null) {
+                List<String> values = parseCsvLine(line);
+                if (values.size() < 8)
+                    continue;
+                byte type = (byte) Arrays.asList(TraceWriter.EVENT_NAMES).indexOf(values.get(0));
+                String time = values.get(5);
+                print(out, type,
+                        Integer.parseInt(values.get(1)),
+                        Integer.parseInt(values.get(2)),
+                        values.get(3),
+                        values.get(4),
+                        time.isEmpty() ? -1 : App.timeToMinutes(time),
+                        values.get(6).isEmpty() ? Double.NaN : Double.parseDouble(values.get(6)),
+                        values.get(7).isEmpty() ? Double.NaN : Double.parseDouble(values.get(7)));
+            }
+        }
+    }
+
+    // Splits a CSV line written by TraceWriter, strings are quoted with "" escapes
+    private static List<String> parseCsvLine(String line) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inQuotes = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (ch == '"') {
+                if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if (ch == ',' && !inQuotes) {
+                result.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(ch);
+            }
+        }
+        result.add(current.toString());
+        return result;
+    }
+
+    // Prints one event in the same wording as the App delivery trace
+    private static void print(PrintWriter out, byte type, int truckId, int packageId, String from, String to,
+            int minute, double miles, double mileage) {
+        switch (type) {
+            case TraceWriter.DRIVE:
+                out.printf("Truck %d: Driving from '%s' to '%s' [%.2f miles]%n",
+                        truckId, from, to, miles);
+                break;
+            case TraceWriter.DELIVER:
+                out.printf("Truck %d: Delivered Package #%d at %s, Truck mileage: %.2f miles%n",
+                        truckId, packageId, formatMinute(minute), mileage);
+                break;
+            case TraceWriter.RETURN:
+                out.printf("Truck %d: Returned from '%s' to %s [%.2f miles] at %s, "
+                        + "Total mileage: %.2f miles%n", truckId, from, to, miles, formatMinute(minute), mileage);
+                break;
+            case TraceWriter.STATUS:
+                out.printf("Package #%d to %s, Status: %s, Delivered at: %s%n",
+                        packageId, from, to, formatMinute(minute));
+                break;
+            default:
+                out.println("Unknown event type " + type);
+        }
+    }
+
+    private static String formatMinute(int minute) {
+        return minute < 0 ? "N/A" : String.format("%02d:%02d", minute / 60, minute % 60);
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * Records delivery events to a file through a pre-sized buffer.
+ * Events are encoded into a direct ByteBuffer and only written to the
+ * FileChannel when the buffer fills up or the writer is closed, so tracing
+ * costs an encode instead of a synchronized System.out.printf per step.
+ *
+ * Two formats are supported:
+ * <ul>
+ * <li>BINARY: "WGTR" magic, int version, then one record per event.
+ * Every record starts with a type byte. STRING records (int id, unsigned short
+ * length, UTF-8 bytes) define an address or status the first time it is
+ * used, every other record is a fixed 36 byte body: int truck, int package,
+ * int from, int to, int minute, double miles, double mileage.</li>
+ * <li>CSV: a header line and one line per event with the strings inline.</li>
+ * </ul>
+ * Use TraceDecoder to pretty-print either format.
+ */
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class TraceWriter implements AutoCloseable {
+
+    /** Output format of a trace file. */
+    public enum Format {
+        BINARY, CSV
+    }
+
+    /** Magic bytes at the start of a binary trace. */
+    static final byte[] MAGIC = { 'W', 'G', 'T', 'R' };
+
+    /** Binary format version. */
+    static final int VERSION = 1;
+
+    // Record types
+    static final byte STRING = 0;
+    static final byte DRIVE = 1;
+    static final byte DELIVER = 2;
+    static final byte RETURN = 3;
+    static final byte STATUS = 4;
+
+    /** Longest string a STRING record can hold, its length is an unsigned short. */
+    static final int MAX_STRING_BYTES = 0xFFFF;
+
+    /** Bytes in a fixed size binary record, type byte included. */
+    static final int RECORD_BYTES = 1 + 5 * Integer.BYTES + 2 * Double.BYTES;
+
+    /** CSV header line. */
+    static final String CSV_HEADER = "event,truck,package,from,to,time,miles,mileage\n";
+
+    /** Names of the record types, indexed by type byte. */
+    static final String[] EVENT_NAMES = { "string", "drive", "deliver", "return", "status" };
+
+    /**
+     * Guards the buffer and the file. A lock instead of synchronized methods so
+     * a truck's virtual thread blocked on the write does not pin its carrier.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Format format;
+
+    /** Binary only, strings already written to the file and their ids. */
+    private final HashMap<String, Integer> stringIds = new HashMap<>();
+    private int nextStringId;
+
+    /** CSV only, reused to build each line. */
+    private final StringBuilder line = new StringBuilder(128);
+
+    private long events;
+    private boolean failed;
+
+    /**
+     * Opens (and truncates) a trace file.
+     *
+     * @param file        file to write
+     * @param format      BINARY or CSV
+     * @param bufferBytes size of the in-memory buffer, at least one record
+     * @throws IOException if the file cannot be opened
+     */
+    public TraceWriter(Path file, Format format, int bufferBytes) throws IOException {
+        this.format = format;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferBytes, 256)).order(ByteOrder.BIG_ENDIAN);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        if (format == Format.BINARY) {
+            buffer.put(MAGIC);
+            buffer.putInt(VERSION);
+        } else {
+            putUtf8(CSV_HEADER);
+        }
+    }
+
+    /**
+     * Records a truck driving between two stops.
+     *
+     * @param truckId truck number
+     * @param from    address the truck leaves
+     * @param to      address the truck drives to
+     * @param miles   length of the leg
+     */
+    public void drive(int truckId, String from, String to, double miles) {
+        lock.lock();
+        try {
+            record(DRIVE, truckId, 0, from, to, -1, miles, Double.NaN);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a package delivery.
+     *
+     * @param truckId   truck number
+     * @param packageId delivered package
+     * @param location  address delivered to
+     * @param minute    delivery time in minutes after midnight
+     * @param mileage   truck mileage after the delivery
+     */
+    public void deliver(int truckId, int packageId, String location, int minute, double mileage) {
+        lock.lock();
+        try {
+            record(DELIVER, truckId, packageId, location, null, minute, Double.NaN, mileage);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a truck returning to its hub.
+     *
+     * @param truckId truck number
+     * @param from    address the truck leaves
+     * @param hub     hub the truck returns to
+     * @param miles   length of the return leg
+     * @param minute  time the truck is back, minutes after midnight
+     * @param mileage truck mileage once back
+     */
+    public void returnToHub(int truckId, String from, String hub, double miles, int minute, double mileage) {
+        lock.lock();
+        try {
+            record(RETURN, truckId, 0, from, hub, minute, miles, mileage);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the final status of a package, used for the package report.
+     *
+     * @param packageId package
+     * @param address   delivery address
+     * @param status    package status
+     * @param minute    delivery time in minutes after midnight, -1 if not delivered
+     */
+    public void packageStatus(int packageId, String address, String status, int minute) {
+        lock.lock();
+        try {
+            record(STATUS, 0, packageId, address, status, minute, Double.NaN, Double.NaN);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Encodes one event in the writer's format
+    private void record(byte type, int truckId, int packageId, String from, String to, int minute,
+            double miles, double mileage) {
+        if (failed)
+            return;
+        events++;
+
+        if (format == Format.BINARY) {
+            int fromId = stringId(from);
+            int toId = stringId(to);
+            ensureRoom(RECORD_BYTES);
+            buffer.put(type).putInt(truckId).putInt(packageId).putInt(fromId).putInt(toId).putInt(minute)
+                    .putDouble(miles).putDouble(mileage);
+            return;
+        }
+
+        line.setLength(0);
+        line.append(EVENT_NAMES[type]).append(',').append(truckId).append(',').append(packageId).append(',');
+        appendCsvString(from);
+        line.append(',');
+        appendCsvString(to);
+        line.append(',');
+        if (minute >= 0)
+            line.append(String.format("%02d:%02d", minute / 60, minute % 60));
+        line.append(',');
+        if (!Double.isNaN(miles))
+            line.append(String.format("%.2f", miles));
+        line.append(',');
+        if (!Double.isNaN(mileage))
+            line.append(String.format("%.2f", mileage));
+        line.append('\n');
+        putUtf8(line.toString());
+    }
+
+    // Binary only, returns the id of a string, writing its definition on first use, -1 if too long to store
+    private int stringId(String value) {
+        if (value == null)
+            return -1;
+        Integer id = stringIds.get(value);
+        if (id != null)
+            return id;
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            // #dontcrash, the event is still recorded, just without this string
+            System.err.println("Trace string too long (" + bytes.length + " bytes), left out of the record");
+            stringIds.put(value, -1);
+            return -1;
+        }
+
+        id = nextStringId++;
+        stringIds.put(value, id);
+        int size = 1 + Integer.BYTES + Short.BYTES + bytes.length;
+        if (size > buffer.capacity()) {
+            // Bigger than the whole buffer, write it straight through
+            flush();
+            ByteBuffer record = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+            record.put(STRING).putInt(id).putShort((short) bytes.length).put(bytes).flip();
+            writeFully(record);
+            return id;
+        }
+        ensureRoom(size);
+        buffer.put(STRING).putInt(id).putShort((short) bytes.length).put(bytes);
+        return id;
+    }
+
+    private void appendCsvString(String value) {
+        if (value == null)
+            return;
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private void putUtf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.capacity()) {
+            flush();
+            writeFully(ByteBuffer.wrap(bytes));
+            return;
+        }
+        ensureRoom(bytes.length);
+        buffer.put(bytes);
+    }
+
+    // Flushes the buffer if it cannot hold the next n bytes
+    private void ensureRoom(int n) {
+        if (buffer.remaining() < n)
+            flush();
+    }
+
+    /**
+     * Writes everything buffered so far to the file.
+     */
+    public void flush() {
+        lock.lock();
+        try {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeFully(ByteBuffer data) {
+        if (failed)
+            return;
+        try {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        } catch (IOException e) {
+            // #dontcrash, stop tracing instead of stopping deliveries
+            System.err.println("Error writing trace file, tracing disabled: " + e.getMessage());
+            failed = true;
+        }
+    }
+
+    /** @return number of events recorded */
+    public long getEventCount() {
+        lock.lock();
+        try {
+            return events;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the buffer and closes the file.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            flush();
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing trace file: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
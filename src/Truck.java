@@ -10,22 +10,57 @@
  *   <li>Average speed: 18 miles/hour</li>
  *   <li>Infinite fuel capacity, instantaneous loading/unloading</li>
  * </ul>
+ * The assignment gives no weight or volume limit. MAX_WEIGHT and MAX_VOLUME
+ * are only defaults for bin packing (--pack), other limits can be passed to
+ * the constructor.
  * @author Taylor Kettering 3/19/25
  */
 
 import java.util.ArrayList;
+import java.util.List;
 
 public class Truck {
 
     /** Maximum number of packages a truck can hold at a time. */
     public static final int MAX_CAPACITY = 16;
 
+    /** Default maximum total weight, in kilograms, not an assignment given, see the constructors. */
+    public static final double MAX_WEIGHT = 1000.0;
+
+    /** Default maximum total volume a truck can hold, unlimited. */
+    public static final double MAX_VOLUME = Double.POSITIVE_INFINITY;
+
     /** Average speed in miles per hour(mph, freedom units) */
     public static final double SPEED_MPH = 18.0;
 
+    /** Truck number, used to tell trucks apart in traces and reports. */
+    private final int truckId;
+
+    /** Hub the truck starts from and goes home to. */
+    private final String homeHub;
+
+    /** Capacity limits of this truck: package count, weight and volume. */
+    private final int maxPackages;
+    private final double maxWeight;
+    private final double maxVolume;
+
+    /** Total weight and volume of the loaded packages. */
+    private double loadedWeight;
+    private double loadedVolume;
+
     /** Packages currently loaded on the truck. */
     private ArrayList<Package> loadedPackages;
 
+    /**
+     * Every place the truck has driven to, in order, starting with where it
+     * started: delivery stops and the hubs it returned to, without repeating
+     * the place it is already at.
+     */
+    private ArrayList<String> route;
+
+    /** Number of stops where packages were delivered, a hub address counts like any other. */
+    private int deliveryStops;
+
     /** Total mileage driven by the truck. */
     private double mileage;
 
@@ -41,24 +76,138 @@ public class Truck {
      * AM.
      */
     public Truck() {
+        this(0);
+    }
+
+    /**
+     * Constructor:
+     * Constructs a numbered Truck, initializes starting location at HUB and time
+     * at 08:00 AM.
+     *
+     * @param truckId truck number
+     */
+    public Truck(int truckId) {
+        this(truckId, "HUB");
+    }
+
+    /**
+     * Constructor:
+     * Constructs a numbered Truck based at its own hub, initializes starting
+     * location at that hub and time at 08:00 AM.
+     *
+     * @param truckId truck number
+     * @param homeHub hub address the truck starts from and goes home to
+     */
+    public Truck(int truckId, String homeHub) {
+        this(truckId, homeHub, MAX_CAPACITY, MAX_WEIGHT, MAX_VOLUME);
+    }
+
+    /**
+     * Constructor:
+     * Constructs a numbered Truck with its own capacity limits.
+     *
+     * @param truckId     truck number
+     * @param maxPackages maximum number of packages
+     * @param maxWeight   maximum total weight in kilograms
+     * @param maxVolume   maximum total volume, POSITIVE_INFINITY for no limit
+     */
+    public Truck(int truckId, int maxPackages, double maxWeight, double maxVolume) {
+        this(truckId, "HUB", maxPackages, maxWeight, maxVolume);
+    }
+
+    /**
+     * Constructor:
+     * Constructs a numbered Truck with its own hub and capacity limits.
+     *
+     * @param truckId     truck number
+     * @param homeHub     hub address the truck starts from and goes home to
+     * @param maxPackages maximum number of packages
+     * @param maxWeight   maximum total weight in kilograms
+     * @param maxVolume   maximum total volume, POSITIVE_INFINITY for no limit
+     */
+    public Truck(int truckId, String homeHub, int maxPackages, double maxWeight, double maxVolume) {
+        this.truckId = truckId;
+        this.homeHub = homeHub;
+        this.maxPackages = maxPackages;
+        this.maxWeight = maxWeight;
+        this.maxVolume = maxVolume;
         loadedPackages = new ArrayList<>();
+        route = new ArrayList<>();
+        route.add(homeHub);
         mileage = 0.0;
-        currentLocation = "HUB";
+        currentLocation = homeHub;
         currentTime = "08:00";
     }
 
+    /**
+     * Checks if a package fits in the remaining count, weight and volume.
+     *
+     * @param pkg Package to check.
+     * @return true if the package can be loaded
+     */
+    public boolean canLoad(Package pkg) {
+        return canLoad(1, pkg.getWeight(), pkg.getVolume());
+    }
+
+    /**
+     * Checks if a group of packages fits in the truck all together.
+     *
+     * @param packages Packages to check.
+     * @return true if every package can be loaded
+     */
+    public boolean canLoad(List<Package> packages) {
+        double weight = 0.0;
+        double volume = 0.0;
+        for (Package pkg : packages) {
+            weight += pkg.getWeight();
+            volume += pkg.getVolume();
+        }
+        return canLoad(packages.size(), weight, volume);
+    }
+
+    /**
+     * Checks if a load of the given size fits in the truck.
+     *
+     * @param count  number of packages
+     * @param weight total weight in kilograms
+     * @param volume total volume
+     * @return true if the load fits
+     */
+    public boolean canLoad(int count, double weight, double volume) {
+        return loadedPackages.size() + count <= maxPackages
+                && loadedWeight + weight <= maxWeight
+                && loadedVolume + volume <= maxVolume;
+    }
+
     /**
      * Loads a package onto the truck if capacity allows.
      *
      * @param pkg Package to load.
+     * @return true if the package was loaded
      */
-    public void loadPackage(Package pkg) {
-        if (loadedPackages.size() < MAX_CAPACITY) {
+    public boolean loadPackage(Package pkg) {
+        if (canLoad(pkg)) {
             loadedPackages.add(pkg);
+            loadedWeight += pkg.getWeight();
+            loadedVolume += pkg.getVolume();
             pkg.setStatus("En route");
-        } else {
-            System.out.println("Truck capacity reached, cannot load package #" + pkg.getPackageId());
+            return true;
         }
+        System.out.println("Truck capacity reached, cannot load package #" + pkg.getPackageId());
+        return false;
+    }
+
+    /**
+     * Takes every package off the truck without delivering it.
+     *
+     * @return the packages that were loaded
+     */
+    public List<Package> unloadAll() {
+        List<Package> unloaded = new ArrayList<>(loadedPackages);
+        loadedPackages.clear();
+        loadedWeight = 0.0;
+        loadedVolume = 0.0;
+        return unloaded;
     }
 
     /**
@@ -71,7 +220,15 @@ public class Truck {
         mileage += distanceToPackage;
         pkg.setStatus("Delivered");
         pkg.setDeliveryTime(currentTime);
-        loadedPackages.remove(pkg);
+        if (loadedPackages.remove(pkg)) {
+            loadedWeight -= pkg.getWeight();
+            loadedVolume -= pkg.getVolume();
+        }
+        if (!pkg.getAddress().equals(currentLocation))
+            route.add(pkg.getAddress());
+        // A new stop unless the last package was delivered right here
+        if (!pkg.getAddress().equals(currentLocation) || deliveryStops == 0)
+            deliveryStops++;
         currentLocation = pkg.getAddress();
 
         double timeTraveled = distanceToPackage / SPEED_MPH;
@@ -84,10 +241,22 @@ public class Truck {
      * @param distanceToHome Distance to the package's delivery Hub.
      */
     public void goHome(double distanceToHome) {
-        mileage += distanceToHome;
-        currentLocation = "HUB";
+        goToHub(homeHub, distanceToHome);
+    }
+
+    /**
+     * Sends the truck to a hub, its own or whichever is cheapest to reach.
+     *
+     * @param hub           hub address
+     * @param distanceToHub Distance to that hub.
+     */
+    public void goToHub(String hub, double distanceToHub) {
+        mileage += distanceToHub;
+        if (!hub.equals(currentLocation))
+            route.add(hub);
+        currentLocation = hub;
 
-        double timeTraveled = distanceToHome / SPEED_MPH;
+        double timeTraveled = distanceToHub / SPEED_MPH;
         updateCurrentTime(timeTraveled);
     }
 
@@ -109,6 +278,16 @@ public class Truck {
     }
 
     // Getters for Truck's internal state
+    /** @return truck number */
+    public int getTruckId() {
+        return truckId;
+    }
+
+    /** @return hub the truck starts from and goes home to */
+    public String getHomeHub() {
+        return homeHub;
+    }
+
     /** @return mileage of truck */
     public double getMileage() {
         return mileage;
@@ -124,6 +303,41 @@ public class Truck {
         return currentTime;
     }
 
+    /** @return maximum number of packages */
+    public int getMaxPackages() {
+        return maxPackages;
+    }
+
+    /** @return maximum total weight in kilograms */
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    /** @return maximum total volume */
+    public double getMaxVolume() {
+        return maxVolume;
+    }
+
+    /** @return total weight of the loaded packages */
+    public double getLoadedWeight() {
+        return loadedWeight;
+    }
+
+    /** @return total volume of the loaded packages */
+    public double getLoadedVolume() {
+        return loadedVolume;
+    }
+
+    /** @return places driven to so far, in order, starting with where the truck started */
+    public List<String> getRoute() {
+        return route;
+    }
+
+    /** @return number of stops where packages were delivered */
+    public int getDeliveryStops() {
+        return deliveryStops;
+    }
+
     /** @return packages on truck */
     public ArrayList<Package> getLoadedPackages() {
         return loadedPackages;
@@ -135,4 +349,30 @@ public class Truck {
         this.currentTime = currentTime;
     }
 
+    /**
+     * Puts the truck back in a saved state, used by SimulationSnapshot.
+     *
+     * @param location     current location/address
+     * @param time         current time in HH:MM format
+     * @param mileage      total mileage driven
+     * @param loaded       packages on the truck
+     * @param route        places driven to so far, starting with where the truck started
+     * @param deliveryStops number of stops where packages were delivered
+     */
+    public void restoreState(String location, String time, double mileage, List<Package> loaded,
+            List<String> route, int deliveryStops) {
+        this.currentLocation = location;
+        this.currentTime = time;
+        this.mileage = mileage;
+        this.loadedPackages = new ArrayList<>(loaded);
+        this.route = new ArrayList<>(route);
+        this.deliveryStops = deliveryStops;
+        loadedWeight = 0.0;
+        loadedVolume = 0.0;
+        for (Package pkg : loaded) {
+            loadedWeight += pkg.getWeight();
+            loadedVolume += pkg.getVolume();
+        }
+    }
+
 }
@@ -0,0 +1,260 @@
+/**
+ * Drives one Truck through its route in simulated real time.
+ * The actor owns its Truck, no other thread changes it, and takes commands
+ * from a mailbox. Commands sent while the truck is driving take effect when
+ * it reaches its next stop.
+ *
+ * Meant to run on its own virtual thread (see LiveSimulation), so a blocked
+ * actor waiting for the clock or for mail does not hold a platform thread.
+ */
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+public class TruckActor implements Runnable {
+
+    /** Message sent to a truck's mailbox. */
+    public interface Command {
+    }
+
+    /** Loads more packages, an idle truck leaves the HUB at the given simulated minute. */
+    public static final class Dispatch implements Command {
+        private final List<Package> packages;
+        private final int departureMinute;
+
+        /**
+         * @param packages        packages to load
+         * @param departureMinute simulated minute an idle truck leaves, its own time if later
+         */
+        public Dispatch(List<Package> packages, int departureMinute) {
+            this.packages = List.copyOf(packages);
+            this.departureMinute = departureMinute;
+        }
+    }
+
+    /**
+     * Changes the remaining route: listed packages are delivered first, in
+     * the given order, the rest by nearest neighbor afterwards.
+     */
+    public static final class Reroute implements Command {
+        private final List<Integer> packageOrder;
+
+        /** @param packageOrder package IDs to deliver next, in order */
+        public Reroute(List<Integer> packageOrder) {
+            this.packageOrder = List.copyOf(packageOrder);
+        }
+    }
+
+    /** Stops the actor once it is back at the HUB. */
+    public static final class Shutdown implements Command {
+    }
+
+    private final Truck truck;
+    private final PackageHashTable pkgTable;
+    private final DistanceGraph graph;
+    private final SimulationClock clock;
+    private final TraceWriter traceWriter;
+
+    /** Called with the truck number every time the truck is back at the HUB. */
+    private final IntConsumer onReturn;
+
+    private final BlockingQueue<Command> mailbox = new LinkedBlockingQueue<>();
+
+    /** Package IDs to deliver before falling back to nearest neighbor. */
+    private final ArrayDeque<Integer> priority = new ArrayDeque<>();
+
+    private boolean shutdownRequested;
+
+    /** Simulated minutes behind the clock before the actor warns that it cannot keep up. */
+    private static final double LAG_WARNING_MINUTES = 5.0;
+    private boolean warnedLag;
+
+    /**
+     * Simulated minute of the next thing the truck does, it cannot get back
+     * to the HUB any earlier. MAX_VALUE while idle.
+     */
+    private volatile double busyUntil;
+
+    /** Simulated minute the truck last got back to the HUB. */
+    private volatile double returnMinute = -1;
+
+    /**
+     * Constructs an actor for a truck.
+     *
+     * @param truck       truck to drive, owned by this actor from now on
+     * @param pkgTable    shared package table for status updates
+     * @param graph       distance graph, read only
+     * @param clock       simulated clock
+     * @param traceWriter trace to record deliveries to, or null
+     * @param onReturn    called with the truck number when it is back at the HUB
+     */
+    public TruckActor(Truck truck, PackageHashTable pkgTable, DistanceGraph graph, SimulationClock clock,
+            TraceWriter traceWriter, IntConsumer onReturn) {
+        this.truck = truck;
+        this.pkgTable = pkgTable;
+        this.graph = graph;
+        this.clock = clock;
+        this.traceWriter = traceWriter;
+        this.onReturn = onReturn;
+        this.busyUntil = truck.getLoadedPackages().isEmpty()
+                ? Double.MAX_VALUE
+                : App.timeToMinutes(truck.getCurrentTime());
+    }
+
+    /**
+     * Sends a command to the truck, safe to call from any thread.
+     *
+     * @param command command to queue
+     */
+    public void send(Command command) {
+        mailbox.add(command);
+    }
+
+    /** @return the truck number */
+    public int getTruckId() {
+        return truck.getTruckId();
+    }
+
+    /** @return simulated minute before which this truck cannot get back to the HUB, safe from any thread */
+    public double getBusyUntil() {
+        return busyUntil;
+    }
+
+    /** @return simulated minute of the truck's last return to the HUB, -1 if none, safe from any thread */
+    public double getReturnMinute() {
+        return returnMinute;
+    }
+
+    /**
+     * @return the truck, only safe to read once the actor has stopped
+     */
+    public Truck getTruck() {
+        return truck;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                if (truck.getLoadedPackages().isEmpty()) {
+                    if (shutdownRequested)
+                        return;
+                    // Idle at the HUB, wait for work
+                    busyUntil = Double.MAX_VALUE;
+                    handle(mailbox.take());
+                    continue;
+                }
+                driveToNextStop();
+                if (truck.getLoadedPackages().isEmpty())
+                    driveHome();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Applies one command
+    private void handle(Command command) {
+        if (command instanceof Dispatch) {
+            boolean idle = truck.getLoadedPackages().isEmpty();
+            for (Package pkg : ((Dispatch) command).packages) {
+                truck.loadPackage(pkg);
+            }
+            // An idle truck leaves at the dispatch time, or its own time if it is not back yet by then
+            int departure = ((Dispatch) command).departureMinute;
+            if (idle && departure > App.timeToMinutes(truck.getCurrentTime()))
+                truck.setCurrentTime(App.minutesToTime(departure));
+            if (idle)
+                busyUntil = App.timeToMinutes(truck.getCurrentTime());
+        } else if (command instanceof Reroute) {
+            priority.clear();
+            priority.addAll(((Reroute) command).packageOrder);
+        } else if (command instanceof Shutdown) {
+            shutdownRequested = true;
+        }
+    }
+
+    // Drives to the next package and delivers it once the clock reaches the arrival time
+    private void driveToNextStop() throws InterruptedException {
+        Package next = nextPackage();
+        if (next == null) {
+            System.out.println("Truck " + truck.getTruckId() + ": no valid package found from "
+                    + truck.getCurrentLocation());
+            truck.unloadAll();
+            return;
+        }
+
+        String from = truck.getCurrentLocation();
+        String to = next.getAddress();
+        double distance = graph.getDistance(from, to);
+        double arrival = App.timeToMinutes(truck.getCurrentTime()) + distance / Truck.SPEED_MPH * 60;
+        busyUntil = arrival;
+        waitUntil(arrival);
+
+        truck.deliverPackage(next, distance);
+        pkgTable.updatePackageStatus(next.getPackageId(), "Delivered", truck.getCurrentTime());
+        if (traceWriter != null) {
+            traceWriter.drive(truck.getTruckId(), from, to, distance);
+            traceWriter.deliver(truck.getTruckId(), next.getPackageId(), to,
+                    App.timeToMinutes(truck.getCurrentTime()), truck.getMileage());
+        }
+    }
+
+    private void driveHome() throws InterruptedException {
+        String from = truck.getCurrentLocation();
+        double distance = graph.getDistance(from, truck.getHomeHub());
+        double arrival = App.timeToMinutes(truck.getCurrentTime()) + distance / Truck.SPEED_MPH * 60;
+        busyUntil = arrival;
+        waitUntil(arrival);
+
+        truck.goHome(distance);
+        returnMinute = App.timeToMinutes(truck.getCurrentTime());
+        if (traceWriter != null)
+            traceWriter.returnToHub(truck.getTruckId(), from, truck.getHomeHub(), distance,
+                    App.timeToMinutes(truck.getCurrentTime()), truck.getMileage());
+        onReturn.accept(truck.getTruckId());
+    }
+
+    // Next package from the reroute list if any is still loaded and reachable, otherwise the nearest one
+    private Package nextPackage() {
+        while (!priority.isEmpty()) {
+            int id = priority.poll();
+            for (Package pkg : truck.getLoadedPackages()) {
+                if (pkg.getPackageId() != id)
+                    continue;
+                // Same guard as the nearest neighbor search, never drive a leg of unknown length
+                if (graph.lookupDistance(truck.getCurrentLocation(), pkg.getAddress()) >= 0)
+                    return pkg;
+                System.out.println("Truck " + truck.getTruckId() + ": no distance to Package #" + id
+                        + ", left to nearest neighbor routing");
+                break;
+            }
+        }
+        return App.findNearestPackage(truck, graph);
+    }
+
+    // Waits for the clock, handling mail as it arrives
+    private void waitUntil(double minute) throws InterruptedException {
+        double behind = clock.now() - minute;
+        if (behind > LAG_WARNING_MINUTES && !warnedLag) {
+            warnedLag = true;
+            System.out.printf("Truck %d is %.0f simulated minutes behind the clock, times stay right but the run is"
+                    + " no longer live, try a lower --live rate%n", truck.getTruckId(), behind);
+        }
+        long nanos;
+        while ((nanos = clock.nanosUntil(minute)) > 0) {
+            Command command = mailbox.poll(nanos, TimeUnit.NANOSECONDS);
+            if (command != null)
+                handle(command);
+        }
+        // Pick up anything that arrived right at the stop
+        List<Command> pending = new ArrayList<>();
+        mailbox.drainTo(pending);
+        for (Command command : pending)
+            handle(command);
+    }
+}